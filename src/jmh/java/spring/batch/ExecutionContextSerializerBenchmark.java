@@ -0,0 +1,65 @@
+package spring.batch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.batch.core.repository.ExecutionContextSerializer;
+import org.springframework.batch.core.repository.dao.Jackson2ExecutionContextStringSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//partition step 이 chunk commit 마다 저장하는 context(minId/maxId + reader 위치)를 기준으로
+//기본 serializer(Jackson)와 CompactExecutionContextSerializer 비교
+//./gradlew jmh
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExecutionContextSerializerBenchmark {
+
+    @Param({"jackson", "compact"})
+    private String serializerName;
+
+    private ExecutionContextSerializer serializer;
+    private Map<String, Object> context;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws Exception {
+        serializer = "compact".equals(serializerName)
+                ? new CompactExecutionContextSerializer()
+                : new Jackson2ExecutionContextStringSerializer();
+
+        context = new HashMap<>();
+        context.put("minId", 1_000_001L);
+        context.put("maxId", 1_250_000L);
+        context.put("JpaPagingItemReader.read.count", 123_000);
+        context.put("UserIdBlockItemReader.lowBlock", 120L);
+        context.put("batch.taskletType", "org.springframework.batch.core.step.item.ChunkOrientedTasklet");
+        context.put("batch.stepType", "org.springframework.batch.core.step.tasklet.TaskletStep");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(context, out);
+        serialized = out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        serializer.serialize(context, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Map<String, Object> deserialize() throws Exception {
+        return serializer.deserialize(new ByteArrayInputStream(serialized));
+    }
+}
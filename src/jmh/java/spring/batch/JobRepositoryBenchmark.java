@@ -0,0 +1,135 @@
+package spring.batch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+//partitionUserJob 처럼 partition step 여러 개가 동시에 chunk commit 하는 상황에서
+//chunk 마다 저장(coalesceChunks=1, 기본 JobRepository)과 CoalescingJobRepository 비교
+//business 데이터 없이 chunk transaction 안에서 하는 meta 데이터 저장 비용만 측정
+//./gradlew jmh
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JobRepositoryBenchmark {
+    private static final int PARTITIONS = 8;
+    private static final int CHUNKS = 100;
+
+    @Param({"1", "10", "50"})
+    private int coalesceChunks;
+
+    private EmbeddedDatabase database;
+    private JobRepository jobRepository;
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService executor;
+    private long run = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("org/springframework/batch/core/schema-h2.sql")
+                .build();
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(database);
+
+        JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
+        factory.setDataSource(database);
+        factory.setTransactionManager(transactionManager);
+        factory.setSerializer(new CompactExecutionContextSerializer());
+        factory.afterPropertiesSet();
+        JobRepository defaultRepository = factory.getObject();
+        jobRepository = coalesceChunks > 1
+                ? new CoalescingJobRepository(defaultRepository, coalesceChunks, 0)
+                : defaultRepository;
+
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        executor = Executors.newFixedThreadPool(PARTITIONS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+        database.shutdown();
+    }
+
+    @Benchmark
+    public void partitionedStep() throws Exception {
+        JobExecution jobExecution = jobRepository.createJobExecution("jobRepositoryBenchmark",
+                new JobParametersBuilder().addLong("run", run++).toJobParameters());
+
+        List<StepExecution> stepExecutions = new ArrayList<>();
+        for (int i = 0; i < PARTITIONS; i++) {
+            StepExecution stepExecution = jobExecution.createStepExecution("userLevelUpStep:partition" + i);
+            stepExecution.getExecutionContext().putLong("minId", i * 1000L + 1);
+            stepExecution.getExecutionContext().putLong("maxId", (i + 1) * 1000L);
+            stepExecutions.add(stepExecution);
+        }
+        jobRepository.addAll(stepExecutions);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (StepExecution stepExecution : stepExecutions) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                runStep(stepExecution);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    //AbstractStep, TaskletStep이 JobRepository를 호출하는 순서
+    private void runStep(StepExecution stepExecution) {
+        stepExecution.setStartTime(new Date());
+        stepExecution.setStatus(BatchStatus.STARTED);
+        jobRepository.update(stepExecution);
+
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            transactionTemplate.execute(status -> {
+                stepExecution.getExecutionContext().putInt("read.count", stepExecution.getReadCount() + 10);
+                jobRepository.updateExecutionContext(stepExecution);
+                stepExecution.setReadCount(stepExecution.getReadCount() + 10);
+                stepExecution.setWriteCount(stepExecution.getWriteCount() + 10);
+                stepExecution.incrementCommitCount();
+                jobRepository.update(stepExecution);
+                return null;
+            });
+        }
+
+        stepExecution.upgradeStatus(BatchStatus.COMPLETED);
+        jobRepository.updateExecutionContext(stepExecution);
+        stepExecution.setEndTime(new Date());
+        jobRepository.update(stepExecution);
+    }
+}
@@ -0,0 +1,111 @@
+package spring.batch.part6;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.step.item.Chunk;
+import org.springframework.batch.core.step.item.ChunkProcessor;
+import org.springframework.batch.core.step.item.SimpleChunkProcessor;
+import org.springframework.batch.integration.async.AsyncItemProcessor;
+import org.springframework.batch.integration.async.AsyncItemWriter;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import spring.batch.part4.User;
+import spring.batch.part4.UserLevelUp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+//partitionUserJob의 chunk(1000개) 처리를 ParallelChunkProcessor와 AsyncItemProcessor/AsyncItemWriter(AsyncUserConfiguration)로 비교
+//같은 크기(4)의 thread pool, 같은 processor(등급 상향 대상만 통과), writer는 DB 없이 개수만 셈
+//./gradlew jmh (gc profiler로 item 당 할당량 비교: gc.alloc.rate.norm)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ChunkProcessorBenchmark {
+    private static final int CHUNK = 1000;
+    private static final int POOL_SIZE = 4;
+
+    @Param({"parallel", "async"})
+    private String processorType;
+
+    private ChunkProcessor<UserLevelUp> chunkProcessor;
+    private StepContribution contribution;
+    private List<UserLevelUp> items;
+    private ForkJoinPool pool;
+    private ThreadPoolTaskExecutor taskExecutor;
+    private volatile long written;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        items = new ArrayList<>(CHUNK);
+        for (int i = 0; i < CHUNK; i++) {
+            items.add(UserLevelUp.builder()
+                    .id((long) i)
+                    .level(User.Level.NORMAL)
+                    .totalAmount(i % 2 == 0 ? 200_000 : 1_000)
+                    .build());
+        }
+
+        ItemProcessor<UserLevelUp, UserLevelUp> itemProcessor = user -> user.availableLevelUp() ? user : null;
+        ItemWriter<UserLevelUp> itemWriter = users -> written += users.size();
+
+        if ("parallel".equals(processorType)) {
+            pool = new ForkJoinPool(POOL_SIZE);
+            ParallelChunkProcessor<UserLevelUp, UserLevelUp> parallelChunkProcessor =
+                    new ParallelChunkProcessor<>(itemProcessor, itemWriter, 100);
+            parallelChunkProcessor.setPool(pool);
+            chunkProcessor = parallelChunkProcessor;
+        } else {
+            taskExecutor = new ThreadPoolTaskExecutor();
+            taskExecutor.setCorePoolSize(POOL_SIZE);
+            taskExecutor.setMaxPoolSize(POOL_SIZE);
+            taskExecutor.initialize();
+
+            AsyncItemProcessor<UserLevelUp, UserLevelUp> asyncItemProcessor = new AsyncItemProcessor<>();
+            asyncItemProcessor.setDelegate(itemProcessor);
+            asyncItemProcessor.setTaskExecutor(taskExecutor);
+            asyncItemProcessor.afterPropertiesSet();
+            AsyncItemWriter<UserLevelUp> asyncItemWriter = new AsyncItemWriter<>();
+            asyncItemWriter.setDelegate(itemWriter);
+            asyncItemWriter.afterPropertiesSet();
+            chunkProcessor = new SimpleChunkProcessor<UserLevelUp, Future<UserLevelUp>>(asyncItemProcessor, asyncItemWriter);
+        }
+
+        JobExecution jobExecution = new JobExecution(new JobInstance(1L, "chunkProcessorBenchmark"), 1L,
+                new JobParameters(), null);
+        contribution = new StepExecution("userLevelUpStep", jobExecution).createStepContribution();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        if (taskExecutor != null) {
+            taskExecutor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public long processChunk() throws Exception {
+        chunkProcessor.process(contribution, new Chunk<>(items));
+        return written;
+    }
+}
@@ -0,0 +1,32 @@
+package spring.batch;
+
+import org.springframework.batch.core.configuration.annotation.BatchConfigurer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.batch.BatchProperties;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+//batch meta 데이터(JobRepository, JobExplorer) 설정
+//BatchConfigurer bean이 있으면 Spring Boot 기본 BatchConfigurer는 등록되지 않음
+@Configuration
+public class BatchMetadataConfiguration {
+
+    @Bean
+    public BatchConfigurer batchConfigurer(BatchProperties properties, DataSource dataSource,
+                                           ObjectProvider<TransactionManagerCustomizers> transactionManagerCustomizers,
+                                           EntityManagerFactory entityManagerFactory,
+                                           @Value("${batch.repository.coalesce-chunks:1}") int coalesceChunks,
+                                           @Value("${batch.repository.coalesce-interval-ms:0}") long coalesceIntervalMillis) {
+        //chunk commit 마다 저장되는 ExecutionContext를 JSON 대신 compact binary로 저장 (기존 JSON도 읽음)
+        CompactBatchConfigurer configurer = new CompactBatchConfigurer(properties, dataSource, transactionManagerCustomizers.getIfAvailable(),
+                entityManagerFactory, new CompactExecutionContextSerializer());
+        //BATCH_STEP_EXECUTION update를 N chunk / T ms 마다 한 번만 (--batch.repository.coalesce-chunks=10)
+        configurer.setCoalesce(coalesceChunks, coalesceIntervalMillis);
+        return configurer;
+    }
+}
@@ -0,0 +1,158 @@
+package spring.batch;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.JobRestartException;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//chunk commit 마다 하는 step execution update(BATCH_STEP_EXECUTION의 count, version)를
+//chunkInterval 번 또는 intervalMillis ms 마다 한 번만 DB에 쓰는 JobRepository
+// - ExecutionContext(BATCH_STEP_EXECUTION_CONTEXT)는 restart 지점이므로 chunk 마다 그대로 저장 (chunk transaction 안에서)
+//   → 재시작은 기존과 같이 마지막 commit된 chunk 다음부터, 다시 처리하는 chunk 없음
+// - 건너뛴 update도 StepExecution(메모리)에는 반영되어 있으므로 다음 flush 때 최신 count가 한 번에 저장됨
+//   (실패로 중단되면 BATCH_STEP_EXECUTION의 count만 마지막 flush 기준으로 남음)
+// - step의 첫 update, STARTED가 아닌 status, endTime이 설정된 update(step 종료)는 항상 바로 저장
+// - stop 요청(JobOperator.stop) 확인도 flush 때만 하므로 그만큼 늦게 멈춤
+//그 외 메서드는 delegate에 그대로 위임
+public class CoalescingJobRepository implements JobRepository {
+    private final JobRepository delegate;
+    private final int chunkInterval;
+    private final long intervalMillis;
+    private final Map<Long, Pending> pendings = new ConcurrentHashMap<>();
+
+    public CoalescingJobRepository(JobRepository delegate, int chunkInterval, long intervalMillis) {
+        this.delegate = delegate;
+        this.chunkInterval = Math.max(chunkInterval, 1);
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public void update(StepExecution stepExecution) {
+        Pending pending = pending(stepExecution);
+        if (pending == null) {
+            flush(stepExecution);
+            return;
+        }
+
+        synchronized (pending) {
+            pending.skipped++;
+            if (pending.skipped < chunkInterval
+                    && (intervalMillis <= 0 || System.currentTimeMillis() - pending.lastFlush < intervalMillis)) {
+                return;
+            }
+            pending.flush(delegate, stepExecution);
+        }
+    }
+
+    @Override
+    public void updateExecutionContext(StepExecution stepExecution) {
+        delegate.updateExecutionContext(stepExecution);
+    }
+
+    //진행 중(STARTED)이고 이미 한 번 저장된 step이면 Pending, 바로 저장해야 하면 null
+    private Pending pending(StepExecution stepExecution) {
+        if (stepExecution.getId() == null
+                || stepExecution.getStatus() != BatchStatus.STARTED
+                || stepExecution.getEndTime() != null) {
+            return null;
+        }
+        return pendings.get(stepExecution.getId());
+    }
+
+    private void flush(StepExecution stepExecution) {
+        Long id = stepExecution.getId();
+        Pending pending = id == null ? null : pendings.get(id);
+        if (pending == null) {
+            delegate.update(stepExecution);
+        } else {
+            synchronized (pending) {
+                pending.flush(delegate, stepExecution);
+            }
+        }
+
+        if (id == null) {
+            return;
+        }
+        if (stepExecution.getStatus() == BatchStatus.STARTED && stepExecution.getEndTime() == null) {
+            pendings.putIfAbsent(id, new Pending());
+        } else {
+            pendings.remove(id);
+        }
+    }
+
+    @Override
+    public boolean isJobInstanceExists(String jobName, JobParameters jobParameters) {
+        return delegate.isJobInstanceExists(jobName, jobParameters);
+    }
+
+    @Override
+    public JobInstance createJobInstance(String jobName, JobParameters jobParameters) {
+        return delegate.createJobInstance(jobName, jobParameters);
+    }
+
+    @Override
+    public JobExecution createJobExecution(JobInstance jobInstance, JobParameters jobParameters, String jobConfigurationLocation) {
+        return delegate.createJobExecution(jobInstance, jobParameters, jobConfigurationLocation);
+    }
+
+    @Override
+    public JobExecution createJobExecution(String jobName, JobParameters jobParameters)
+            throws JobExecutionAlreadyRunningException, JobRestartException, JobInstanceAlreadyCompleteException {
+        return delegate.createJobExecution(jobName, jobParameters);
+    }
+
+    @Override
+    public void update(JobExecution jobExecution) {
+        delegate.update(jobExecution);
+    }
+
+    @Override
+    public void add(StepExecution stepExecution) {
+        delegate.add(stepExecution);
+    }
+
+    @Override
+    public void addAll(Collection<StepExecution> stepExecutions) {
+        delegate.addAll(stepExecutions);
+    }
+
+    @Override
+    public void updateExecutionContext(JobExecution jobExecution) {
+        delegate.updateExecutionContext(jobExecution);
+    }
+
+    @Override
+    public StepExecution getLastStepExecution(JobInstance jobInstance, String stepName) {
+        return delegate.getLastStepExecution(jobInstance, stepName);
+    }
+
+    @Override
+    public int getStepExecutionCount(JobInstance jobInstance, String stepName) {
+        return delegate.getStepExecutionCount(jobInstance, stepName);
+    }
+
+    @Override
+    public JobExecution getLastJobExecution(String jobName, JobParameters jobParameters) {
+        return delegate.getLastJobExecution(jobName, jobParameters);
+    }
+
+    private static class Pending {
+        private int skipped;
+        private long lastFlush = System.currentTimeMillis();
+
+        private void flush(JobRepository delegate, StepExecution stepExecution) {
+            delegate.update(stepExecution);
+            skipped = 0;
+            lastFlush = System.currentTimeMillis();
+        }
+    }
+}
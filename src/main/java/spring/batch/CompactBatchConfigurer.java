@@ -0,0 +1,73 @@
+package spring.batch;
+
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.explore.support.JobExplorerFactoryBean;
+import org.springframework.batch.core.repository.ExecutionContextSerializer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.boot.autoconfigure.batch.BatchProperties;
+import org.springframework.boot.autoconfigure.batch.JpaBatchConfigurer;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.util.StringUtils;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+//Spring Boot 기본 설정(JpaBatchConfigurer)에서 JobRepository, JobExplorer의 ExecutionContext serializer만 변경
+//JobRepository(저장)와 JobExplorer(조회)가 같은 serializer를 사용해야 함 (BatchMetadataConfiguration에서 등록)
+public class CompactBatchConfigurer extends JpaBatchConfigurer {
+    private final BatchProperties properties;
+    private final DataSource dataSource;
+    private final ExecutionContextSerializer serializer;
+    private int coalesceChunks = 1;
+    private long coalesceIntervalMillis = 0;
+
+    public CompactBatchConfigurer(BatchProperties properties, DataSource dataSource,
+                                  TransactionManagerCustomizers transactionManagerCustomizers,
+                                  EntityManagerFactory entityManagerFactory, ExecutionContextSerializer serializer) {
+        super(properties, dataSource, transactionManagerCustomizers, entityManagerFactory);
+        this.properties = properties;
+        this.dataSource = dataSource;
+        this.serializer = serializer;
+    }
+
+    //step execution update를 coalesceChunks chunk 또는 coalesceIntervalMillis ms 마다 저장 (CoalescingJobRepository)
+    //기본값(1, 0)이면 기존처럼 chunk 마다 저장
+    public void setCoalesce(int coalesceChunks, long coalesceIntervalMillis) {
+        this.coalesceChunks = coalesceChunks;
+        this.coalesceIntervalMillis = coalesceIntervalMillis;
+    }
+
+    @Override
+    protected JobRepository createJobRepository() throws Exception {
+        JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
+        factory.setDataSource(dataSource);
+        String isolationLevel = determineIsolationLevel();
+        if (isolationLevel != null) {
+            factory.setIsolationLevelForCreate(isolationLevel);
+        }
+        if (StringUtils.hasText(properties.getTablePrefix())) {
+            factory.setTablePrefix(properties.getTablePrefix());
+        }
+        factory.setTransactionManager(getTransactionManager());
+        factory.setSerializer(serializer);
+        factory.afterPropertiesSet();
+        JobRepository jobRepository = factory.getObject();
+        if (coalesceChunks > 1 || coalesceIntervalMillis > 0) {
+            return new CoalescingJobRepository(jobRepository, coalesceChunks, coalesceIntervalMillis);
+        }
+        return jobRepository;
+    }
+
+    @Override
+    protected JobExplorer createJobExplorer() throws Exception {
+        JobExplorerFactoryBean factory = new JobExplorerFactoryBean();
+        factory.setDataSource(dataSource);
+        if (StringUtils.hasText(properties.getTablePrefix())) {
+            factory.setTablePrefix(properties.getTablePrefix());
+        }
+        factory.setSerializer(serializer);
+        factory.afterPropertiesSet();
+        return factory.getObject();
+    }
+}
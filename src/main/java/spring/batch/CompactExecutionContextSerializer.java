@@ -0,0 +1,167 @@
+package spring.batch;
+
+import org.springframework.batch.core.repository.ExecutionContextSerializer;
+import org.springframework.batch.core.repository.dao.Jackson2ExecutionContextStringSerializer;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+//ExecutionContext 값이 String, Integer, Long, Double, Boolean 뿐이면 JSON 대신 작은 binary로 저장하는 serializer
+//(reader 위치, partition minId/maxId 처럼 숫자 몇 개인 context를 chunk commit 마다 저장하는 비용을 줄임)
+// - 형식: "CX1:" + Base64(개수, [key, type, value]...), 숫자는 zigzag varint
+//   BATCH_*_CONTEXT 컬럼은 문자열이므로 binary를 그대로 넣지 않고 Base64로 감쌈
+// - 다른 type의 값이 하나라도 있으면 context 전체를 Jackson(기본 serializer)으로 저장
+// - "CX1:"로 시작하지 않는 기존 JSON context는 Jackson으로 읽음 (기존 meta 데이터 그대로 사용 가능)
+public class CompactExecutionContextSerializer implements ExecutionContextSerializer {
+    private static final byte[] PREFIX = "CX1:".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+
+    private final ExecutionContextSerializer fallback;
+
+    public CompactExecutionContextSerializer() {
+        this(new Jackson2ExecutionContextStringSerializer());
+    }
+
+    public CompactExecutionContextSerializer(ExecutionContextSerializer fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void serialize(Map<String, Object> context, OutputStream outputStream) throws IOException {
+        if (!context.values().stream().allMatch(CompactExecutionContextSerializer::supported)) {
+            fallback.serialize(context, outputStream);
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * context.size() + 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeVarLong(out, context.size());
+        for (Map.Entry<String, Object> entry : context.entrySet()) {
+            writeString(out, entry.getKey());
+            Object value = entry.getValue();
+            if (value instanceof String) {
+                out.writeByte(STRING);
+                writeString(out, (String) value);
+            } else if (value instanceof Integer) {
+                out.writeByte(INTEGER);
+                writeVarLong(out, (Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                writeVarLong(out, (Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            }
+        }
+        out.flush();
+
+        outputStream.write(PREFIX);
+        outputStream.write(Base64.getEncoder().encode(bytes.toByteArray()));
+    }
+
+    @Override
+    public Map<String, Object> deserialize(InputStream inputStream) throws IOException {
+        byte[] serialized = StreamUtils.copyToByteArray(inputStream);
+        if (!startsWithPrefix(serialized)) {
+            return fallback.deserialize(new ByteArrayInputStream(serialized));
+        }
+
+        byte[] decoded = Base64.getDecoder().decode(
+                new String(serialized, PREFIX.length, serialized.length - PREFIX.length, StandardCharsets.ISO_8859_1));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(decoded));
+        int size = (int) readVarLong(in);
+        Map<String, Object> context = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            byte type = in.readByte();
+            switch (type) {
+                case STRING:
+                    context.put(key, readString(in));
+                    break;
+                case INTEGER:
+                    context.put(key, (int) readVarLong(in));
+                    break;
+                case LONG:
+                    context.put(key, readVarLong(in));
+                    break;
+                case DOUBLE:
+                    context.put(key, in.readDouble());
+                    break;
+                case BOOLEAN:
+                    context.put(key, in.readBoolean());
+                    break;
+                default:
+                    throw new IOException("알 수 없는 ExecutionContext 값 type: " + type);
+            }
+        }
+        return context;
+    }
+
+    private static boolean supported(Object value) {
+        return value instanceof String || value instanceof Integer || value instanceof Long
+                || value instanceof Double || value instanceof Boolean;
+    }
+
+    private static boolean startsWithPrefix(byte[] serialized) {
+        if (serialized.length < PREFIX.length) {
+            return false;
+        }
+        for (int i = 0; i < PREFIX.length; i++) {
+            if (serialized[i] != PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //zigzag + 7bit varint (작은 양수, 음수 모두 1~2 byte)
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("잘못된 varint");
+    }
+}
@@ -0,0 +1,65 @@
+package spring.batch;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+//JPA entity(User, Orders, Person)의 pooled-lo TableGenerator와 같은 hibernate_sequences 테이블에서
+//JDBC로 insert 하는 writer가 사용할 id 범위를 chunk 단위로 예약함
+// - next_val은 "다음에 사용할 id", 예약하면 [next_val, next_val + size) 를 사용하고 next_val += size (pooled-lo와 같은 의미)
+// - update ... where next_val = ? 로 비교 후 변경하므로 여러 thread, Hibernate와 동시에 사용해도 범위가 겹치지 않음
+// - chunk transaction이 rollback 되어도 예약은 유지되도록 별도 connection에서 바로 commit (id gap은 생길 수 있음)
+//segment 이름은 테이블 이름과 같게 사용 (row가 없으면 테이블의 max(id) + 1부터 시작)
+public class IdRangeAllocator {
+    public static final String TABLE = "hibernate_sequences";
+    private static final int MAX_ATTEMPTS = 100;
+
+    private final DataSource dataSource;
+
+    public IdRangeAllocator(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    //예약한 범위의 첫 번째 id
+    public long allocate(String segment, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        //DataSourceUtils를 거치지 않고 가져온 connection은 현재 transaction에 묶이지 않음
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                List<Long> values = jdbcTemplate.queryForList(
+                        "select next_val from " + TABLE + " where sequence_name = ?", Long.class, segment);
+                if (values.isEmpty()) {
+                    initialize(jdbcTemplate, segment);
+                    continue;
+                }
+                long next = values.get(0);
+                if (jdbcTemplate.update("update " + TABLE + " set next_val = ? where sequence_name = ? and next_val = ?",
+                        next + size, segment, next) == 1) {
+                    return next;
+                }
+            }
+            throw new IllegalStateException("id 범위 예약 실패: " + segment);
+        } catch (SQLException e) {
+            throw new CannotGetJdbcConnectionException("id 범위 예약용 connection 획득 실패", e);
+        }
+    }
+
+    private void initialize(JdbcTemplate jdbcTemplate, String segment) {
+        try {
+            jdbcTemplate.update("insert into " + TABLE + " (sequence_name, next_val) " +
+                    "select ?, coalesce(max(id), 0) + 1 from " + segment, segment);
+        } catch (DuplicateKeyException e) {
+            //다른 thread가 먼저 만든 경우, 다시 조회
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package spring.batch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//step 사이에 큰 데이터를 넘기기 위한 job 실행 단위 메모리 저장소
+//ExecutionContext는 commit 마다 직렬화되어 meta 테이블에 저장되므로, 데이터는 여기에 두고 ExecutionContext에는 handle만 저장
+// - handle = "job execution id/key", 다른 실행(재시작, 다른 JVM)의 handle이면 get()은 null → 호출하는 쪽에서 DB 등 원본을 다시 읽음
+// - job이 끝나면(afterJob) 해당 실행의 데이터를 지우고 AutoCloseable이면 close (off-heap, memory-mapped 파일 해제)
+//job의 listener로 등록해서 사용
+@Slf4j
+public class JobHandoffStore implements JobExecutionListener {
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+
+    public String put(JobExecution jobExecution, String key, Object value) {
+        String handle = handle(jobExecution, key);
+        Object previous = values.put(handle, value);
+        if (previous != null && previous != value) {
+            close(handle, previous);
+        }
+        jobExecution.getExecutionContext().putString(key, handle);
+        return handle;
+    }
+
+    //현재 실행에서 저장한 값이 없으면 null
+    public <T> T get(JobExecution jobExecution, String key, Class<T> type) {
+        String handle = jobExecution.getExecutionContext().getString(key, null);
+        if (handle == null || !handle.equals(handle(jobExecution, key))) {
+            return null;
+        }
+        return type.cast(values.get(handle));
+    }
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        //nothing
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        String prefix = jobExecution.getId() + "/";
+        values.keySet().removeIf(handle -> {
+            if (!handle.startsWith(prefix)) {
+                return false;
+            }
+            close(handle, values.get(handle));
+            return true;
+        });
+    }
+
+    private String handle(JobExecution jobExecution, String key) {
+        return jobExecution.getId() + "/" + key;
+    }
+
+    private void close(String handle, Object value) {
+        if (value instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) value).close();
+            } catch (Exception e) {
+                log.warn("handoff {} close 실패", handle, e);
+            }
+        }
+    }
+}
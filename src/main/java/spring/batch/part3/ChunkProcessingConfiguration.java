@@ -2,6 +2,7 @@ package spring.batch.part3;
 
 import io.micrometer.core.instrument.util.StringUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.Step;
@@ -14,6 +15,7 @@ import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import spring.batch.part6.AdaptiveChunkSizeCompletionPolicy;
 
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
@@ -46,6 +48,18 @@ public class ChunkProcessingConfiguration {
     @Bean
     @JobScope
     public Step chunkBaseStep(@Value("#{jobParameters[chunkSize]}") String chunkSize){
+        //chunkSize=auto 이면 처리 시간에 따라 1 ~ 100개 사이에서 조절
+        if ("auto".equalsIgnoreCase(chunkSize)) {
+            AdaptiveChunkSizeCompletionPolicy completionPolicy =
+                    new AdaptiveChunkSizeCompletionPolicy("chunkBaseStep", 10, 1, 100, 100, 0);
+            return stepBuilderFactory.get("chunkBaseStep")
+                    .<String, String>chunk(completionPolicy)
+                    .reader(itemReader())
+                    .processor(itemProcessor())
+                    .writer(itemWriter())
+                    .listener((ChunkListener) completionPolicy)
+                    .build();
+        }
         //10개씩 나누라는 의미, 100개인 경우 10번 실행
         return stepBuilderFactory.get("chunkBaseStep")
                 .<String, String>chunk(StringUtils.isNotEmpty(chunkSize)? Integer.parseInt(chunkSize): 10) //input type, output type 둘다 String
@@ -120,7 +134,8 @@ public class ChunkProcessingConfiguration {
             //21.11.15 job param 추가
 //            JobParameters jobParameters = stepExecution.getJobParameters();
 //            String value = jobParameters.getString("chunkSize", "10");
-            int chunkSize = StringUtils.isNotEmpty(value)? Integer.parseInt(value) : 10;
+            //chunkSize=auto 는 chunkBaseStep 용이므로 tasklet은 기본값 사용
+            int chunkSize = StringUtils.isNotEmpty(value) && !"auto".equalsIgnoreCase(value) ? Integer.parseInt(value) : 10;
             int fromIndex = stepExecution.getReadCount(); // chunk에서 읽은 아이템 크기
             int toIndex = fromIndex + chunkSize;
 
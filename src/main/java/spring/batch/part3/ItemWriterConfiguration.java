@@ -21,6 +21,7 @@ import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.FileSystemResource;
+import spring.batch.IdRangeAllocator;
 
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
@@ -94,11 +95,20 @@ public class ItemWriterConfiguration {
                 .dataSource(dataSource)
                 .itemSqlParameterSourceProvider(new BeanPropertyItemSqlParameterSourceProvider<>())
                 //Person class를 파라미터로 자동 설정해줌.
-                .sql("insert into person(name, age, address) values(:name, :age, :address)")
+                .sql("insert into person(id, name, age, address) values(:id, :name, :age, :address)")
                 .build();
         itemWriter.afterPropertiesSet();
 
-        return itemWriter;
+        //person.id가 auto increment가 아니므로 JPA와 같은 hibernate_sequences에서 chunk 단위로 id 범위를 예약해서 붙임
+        IdRangeAllocator idRangeAllocator = new IdRangeAllocator(dataSource);
+        return items -> {
+            long id = idRangeAllocator.allocate("person", items.size());
+            List<Person> people = new ArrayList<>(items.size());
+            for (Person person : items) {
+                people.add(new Person((int) id++, person.getName(), person.getAge(), person.getAddress()));
+            }
+            itemWriter.write(people);
+        };
     }
 
     private ItemWriter<Person> csvFileItemWriter() throws Exception {
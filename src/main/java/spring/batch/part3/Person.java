@@ -2,6 +2,8 @@ package spring.batch.part3;
 
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -15,7 +17,13 @@ import java.util.Objects;
 public class Person {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    //jpaItemWriter가 batch insert 할 수 있도록 IDENTITY 대신 table generator 사용
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "person_id")
+    @GenericGenerator(name = "person_id", strategy = "org.hibernate.id.enhanced.TableGenerator", parameters = {
+            @Parameter(name = "table_name", value = "hibernate_sequences"),
+            @Parameter(name = "segment_value", value = "person"),
+            @Parameter(name = "increment_size", value = "100"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
     private int id;
     private String name;
     private String age;
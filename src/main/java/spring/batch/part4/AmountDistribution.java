@@ -0,0 +1,50 @@
+package spring.batch.part4;
+
+import io.micrometer.core.instrument.util.StringUtils;
+
+import java.util.SplittableRandom;
+
+//생성할 주문 금액 분포, "금액:가중치,금액:가중치" 형식 (예: 1000:1,200000:1,300000:1,500000:1)
+//기본값은 SaveUserTasklet과 같은 4개 금액 균등 분포
+public class AmountDistribution {
+    public static final String DEFAULT = "1000:1,200000:1,300000:1,500000:1";
+
+    private final int[] amounts;
+    private final long[] cumulativeWeights;
+
+    private AmountDistribution(int[] amounts, long[] cumulativeWeights) {
+        this.amounts = amounts;
+        this.cumulativeWeights = cumulativeWeights;
+    }
+
+    public static AmountDistribution of(String value) {
+        String[] entries = (StringUtils.isEmpty(value) ? DEFAULT : value).split(",");
+        int[] amounts = new int[entries.length];
+        long[] cumulativeWeights = new long[entries.length];
+        long total = 0;
+        for (int i = 0; i < entries.length; i++) {
+            String[] entry = entries[i].trim().split(":");
+            amounts[i] = Integer.parseInt(entry[0].trim());
+            long weight = entry.length > 1 ? Long.parseLong(entry[1].trim()) : 1;
+            if (weight < 0) {
+                throw new IllegalArgumentException("weight must not be negative: " + entries[i]);
+            }
+            total += weight;
+            cumulativeWeights[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("amount distribution has no weight: " + value);
+        }
+        return new AmountDistribution(amounts, cumulativeWeights);
+    }
+
+    public int sample(SplittableRandom random) {
+        long point = random.nextLong(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (point < cumulativeWeights[i]) {
+                return amounts[i];
+            }
+        }
+        return amounts[amounts.length - 1];
+    }
+}
@@ -0,0 +1,89 @@
+package spring.batch.part4;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+//user를 JVM으로 읽지 않고 id 범위마다 update 한 번을 실행하는 tasklet (sql은 :minId, :maxId 사용)
+//partitioner가 나눈 범위 하나를 처리할 때마다 CONTINUABLE을 반환하므로 범위마다 별도 transaction으로 commit 됨.
+//마지막으로 끝난 범위의 maxId를 step ExecutionContext에 저장해서 재시작 시 다음 범위부터 처리
+@Slf4j
+public class IdRangeUpdateTasklet implements Tasklet, StepExecutionListener {
+    private static final String LAST_MAX_ID = "lastMaxId";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final Partitioner partitioner;
+    private final int gridSize;
+    private final String sql;
+
+    private List<long[]> ranges = new ArrayList<>();
+
+    public IdRangeUpdateTasklet(DataSource dataSource, Partitioner partitioner, int gridSize, String sql) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        this.partitioner = partitioner;
+        this.gridSize = gridSize;
+        this.sql = sql;
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        //partitioner의 minId, maxId만 사용 (partition step을 만들지 않음)
+        List<long[]> ranges = new ArrayList<>();
+        for (ExecutionContext context : partitioner.partition(gridSize).values()) {
+            ranges.add(new long[]{context.getLong("minId"), context.getLong("maxId")});
+        }
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        this.ranges = ranges;
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        this.ranges = new ArrayList<>();
+        return null;
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        ExecutionContext executionContext = contribution.getStepExecution().getExecutionContext();
+        long lastMaxId = executionContext.getLong(LAST_MAX_ID, Long.MIN_VALUE);
+
+        long[] range = ranges.stream()
+                .filter(candidate -> candidate[1] > lastMaxId)
+                .findFirst()
+                .orElse(null);
+        if (range == null) {
+            return RepeatStatus.FINISHED;
+        }
+
+        //재시작 후 범위가 다시 계산되어도 이미 끝난 id는 건너뜀
+        long minId = Math.max(range[0], lastMaxId == Long.MIN_VALUE ? range[0] : lastMaxId + 1);
+        int updated = jdbcTemplate.update(sql, parameters(minId, range[1]));
+
+        contribution.incrementWriteCount(updated);
+        executionContext.putLong(LAST_MAX_ID, range[1]);
+        log.debug("id {} ~ {} update {} 건", minId, range[1], updated);
+
+        return range == ranges.get(ranges.size() - 1) ? RepeatStatus.FINISHED : RepeatStatus.CONTINUABLE;
+    }
+
+    //sql에 추가 parameter가 필요하면 override
+    protected MapSqlParameterSource parameters(long minId, long maxId) {
+        return new MapSqlParameterSource()
+                .addValue("minId", minId)
+                .addValue("maxId", maxId);
+    }
+}
@@ -0,0 +1,67 @@
+package spring.batch.part4;
+
+import io.micrometer.core.instrument.util.StringUtils;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//등급 상향 기준 금액표 (시뮬레이션용), User.Level의 nextAmount를 바꿨을 때를 가정
+//job parameter 형식: "이름:NORMAL기준/SILVER기준/GOLD기준;..." 예) "current:200000/300000/500000;strict:300000/500000/1000000"
+public class LevelThresholds {
+    private static final User.Level[] LEVELS = User.Level.values();
+
+    @Getter
+    private final String name;
+    //Level ordinal 별 상향 기준 금액 (VIP는 상향 없음)
+    private final long[] nextAmounts = new long[LEVELS.length];
+
+    public LevelThresholds(String name, long normal, long silver, long gold) {
+        if (!(normal < silver && silver < gold)) {
+            throw new IllegalArgumentException("기준 금액은 NORMAL < SILVER < GOLD 순서여야 함: " + name);
+        }
+        this.name = name;
+        this.nextAmounts[User.Level.NORMAL.ordinal()] = normal;
+        this.nextAmounts[User.Level.SILVER.ordinal()] = silver;
+        this.nextAmounts[User.Level.GOLD.ordinal()] = gold;
+        this.nextAmounts[User.Level.VIP.ordinal()] = Long.MAX_VALUE;
+    }
+
+    //현재 User.Level 기준
+    public static LevelThresholds current() {
+        return new LevelThresholds("current", User.Level.NORMAL.nextAmount(),
+                User.Level.SILVER.nextAmount(), User.Level.GOLD.nextAmount());
+    }
+
+    //"current" 이름이 없으면 비교 기준으로 맨 앞에 추가
+    public static List<LevelThresholds> of(String scenarios) {
+        List<LevelThresholds> result = new ArrayList<>();
+        if (StringUtils.isNotEmpty(scenarios)) {
+            for (String scenario : scenarios.split(";")) {
+                if (StringUtils.isBlank(scenario)) {
+                    continue;
+                }
+                String[] nameAndAmounts = scenario.trim().split(":");
+                String[] amounts = nameAndAmounts[1].split("/");
+                if (amounts.length != 3) {
+                    throw new IllegalArgumentException("NORMAL/SILVER/GOLD 기준 금액 3개 필요: " + scenario);
+                }
+                result.add(new LevelThresholds(nameAndAmounts[0].trim(), Long.parseLong(amounts[0].trim()),
+                        Long.parseLong(amounts[1].trim()), Long.parseLong(amounts[2].trim())));
+            }
+        }
+        if (result.stream().noneMatch(thresholds -> "current".equals(thresholds.getName()))) {
+            result.add(0, current());
+        }
+        return result;
+    }
+
+    //User.levelUp과 같은 규칙: 현재 등급 기준을 넘으면 합계가 닿는 가장 높은 등급까지 상향 (하향 없음)
+    public int nextLevelOrdinal(int levelOrdinal, long totalAmount) {
+        User.Level level = LEVELS[levelOrdinal];
+        while (level.nextLevel() != null && totalAmount >= nextAmounts[level.ordinal()]) {
+            level = level.nextLevel();
+        }
+        return level.ordinal();
+    }
+}
@@ -0,0 +1,10 @@
+package spring.batch.part4;
+
+//등급 상향 writer가 필요로 하는 최소 정보 (User entity, 조회 전용 record 모두 사용)
+public interface LevelUpTarget {
+    Long getId();
+
+    boolean availableLevelUp();
+
+    User.Level getNextLevel();
+}
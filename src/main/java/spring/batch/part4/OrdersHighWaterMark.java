@@ -0,0 +1,97 @@
+package spring.batch.part4;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+//level-up step이 끝까지 처리한 orders.id 최댓값(high-water mark)을 job ExecutionContext에 저장하고
+//다음 실행에서 이전 job의 값을 읽어서 그 이후에 주문이 생긴 user만 처리할 수 있게 함
+// - step 시작 시점의 max(orders.id)를 저장하므로 처리 중에 들어온 주문은 다음 실행에서 다시 확인
+// - 이전 값이 없으면 0 (모든 주문 = 전체 재처리)
+//orders.id는 commit 순서가 아님: pooled-lo(increment_size 1000)는 JVM 마다, IdRangeAllocator는 chunk 마다 id 범위를 미리 예약하므로
+//mark 보다 작은 id의 주문이 mark를 저장한 뒤에 commit 될 수 있음
+// → 다음 실행은 mark - safetyMargin 이후의 주문부터 다시 확인 (getLowerBound, 등급 상향은 다시 확인해도 결과가 같음)
+// - safetyMargin은 동시에 예약되어 있을 수 있는 가장 큰 id 범위 이상이어야 함 (기본 10,000)
+// - 예약한 범위를 margin 보다 오래 들고 있는 writer(오래 떠 있는 JVM의 pooled-lo 등)가 있으면 그 주문은 놓칠 수 있으므로
+//   그런 writer가 있으면 주기적으로 전체 mode(AGGREGATE 등)를 실행해야 함
+@Slf4j
+public class OrdersHighWaterMark implements StepExecutionListener {
+    public static final String KEY = "ordersHighWaterMark";
+
+    private final JobExplorer jobExplorer;
+    private final JdbcTemplate jdbcTemplate;
+    private final String jobName;
+    private int historySize = 10;
+    private long safetyMargin = 10_000;
+
+    private long previous = 0;
+    private long current = 0;
+
+    public OrdersHighWaterMark(JobExplorer jobExplorer, DataSource dataSource, String jobName) {
+        this.jobExplorer = jobExplorer;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jobName = jobName;
+    }
+
+    public void setHistorySize(int historySize) {
+        this.historySize = historySize;
+    }
+
+    public void setSafetyMargin(long safetyMargin) {
+        this.safetyMargin = safetyMargin;
+    }
+
+    //이전 실행에서 처리한 마지막 orders.id (beforeStep 이후에 유효)
+    public long getPrevious() {
+        return previous;
+    }
+
+    //reader의 조건(orders.id > ?)으로 사용: 이전 mark에서 safetyMargin 만큼 앞부터 (beforeStep 이후에 유효)
+    public long getLowerBound() {
+        return Math.max(previous - safetyMargin, 0);
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        this.current = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from orders", Long.class);
+        this.previous = findPrevious(stepExecution.getJobExecution());
+        log.info("orders high-water mark: 이전 {} (조회 시작 {}), 현재 {}", previous, getLowerBound(), current);
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        //끝까지 처리한 경우에만 저장 (실패한 실행의 값은 다음 실행에서 사용하지 않음)
+        if (stepExecution.getStatus() == BatchStatus.COMPLETED) {
+            stepExecution.getJobExecution().getExecutionContext().putLong(KEY, current);
+        }
+        return null;
+    }
+
+    //가장 최근 job instance 중 high-water mark를 저장한 실행의 값
+    private long findPrevious(JobExecution currentExecution) {
+        for (JobInstance jobInstance : jobExplorer.getJobInstances(jobName, 0, historySize)) {
+            List<JobExecution> executions = new ArrayList<>(jobExplorer.getJobExecutions(jobInstance));
+            executions.sort(Comparator.comparing(JobExecution::getId).reversed());
+            for (JobExecution execution : executions) {
+                if (execution.getId().equals(currentExecution.getId())) {
+                    continue;
+                }
+                if (execution.getExecutionContext().containsKey(KEY)) {
+                    return execution.getExecutionContext().getLong(KEY);
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -1,22 +1,38 @@
 package spring.batch.part4;
 
+import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.StepContribution;
 import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.core.step.tasklet.Tasklet;
 import org.springframework.batch.repeat.RepeatStatus;
+import spring.batch.JobHandoffStore;
 import spring.batch.part5.Orders;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 public class SaveUserTasklet implements Tasklet {
+    public static final String HANDOFF_KEY = "savedUserSnapshot";
+    //handoff 한 user의 id 범위 (job ExecutionContext), 재시작 시 snapshot을 같은 범위로 다시 읽음
+    public static final String SAVED_MIN_ID = "savedUserMinId";
+    public static final String SAVED_MAX_ID = "savedUserMaxId";
+
     private final int SIZE = 10_000;
     private final UserRepository userRepository;
+    private final JobHandoffStore handoffStore;
 
     public SaveUserTasklet(UserRepository userRepository) {
+        this(userRepository, null);
+    }
+
+    //handoffStore가 있으면 저장한 user의 (id, 등급, 주문 합계)를 snapshot으로 만들어서 다음 step에 넘김
+    public SaveUserTasklet(UserRepository userRepository, JobHandoffStore handoffStore) {
         this.userRepository = userRepository;
+        this.handoffStore = handoffStore;
     }
 
 
@@ -27,9 +43,30 @@ public class SaveUserTasklet implements Tasklet {
 
         userRepository.saveAll(users);
 
+        //SNAPSHOT mode의 level-up step만 snapshot을 사용
+        if (handoffStore != null && UserLevelUpMode.of(
+                contribution.getStepExecution().getJobParameters().getString("mode")) == UserLevelUpMode.SNAPSHOT) {
+            handoff(contribution.getStepExecution().getJobExecution(), users);
+        }
+
         return RepeatStatus.FINISHED;
     }
 
+    private void handoff(JobExecution jobExecution, List<User> users) throws IOException {
+        //snapshot은 id 순서로 채움 (pooled-lo로 saveAll 시점에 id가 정해짐)
+        users.sort(Comparator.comparing(User::getId));
+        UserLevelSnapshot snapshot = UserLevelSnapshot.allocate(users.size(),
+                UserLevelSnapshot.Backing.of(jobExecution.getJobParameters().getString("snapshot")));
+        for (User user : users) {
+            snapshot.add(user.getId(), user.getLevel(), user.getTotalAmount());
+        }
+        handoffStore.put(jobExecution, HANDOFF_KEY, snapshot);
+        if (!users.isEmpty()) {
+            jobExecution.getExecutionContext().putLong(SAVED_MIN_ID, users.get(0).getId());
+            jobExecution.getExecutionContext().putLong(SAVED_MAX_ID, users.get(users.size() - 1).getId());
+        }
+    }
+
     private List<User> createUsers() {
         List<User> users = new ArrayList<>();
 
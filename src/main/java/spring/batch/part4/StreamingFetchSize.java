@@ -0,0 +1,30 @@
+package spring.batch.part4;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+//큰 결과를 한 번에 읽는 query의 fetchSize
+//MySQL(Connector/J)은 URL에 useCursorFetch가 없으면 양수 fetchSize를 무시하고 결과 전체를 메모리에 올림
+//→ Integer.MIN_VALUE일 때만 row 단위 streaming (H2 등 다른 DB는 음수 fetchSize를 허용하지 않으므로 그대로 사용)
+// - JdbcTemplate.setFetchSize는 Integer.MIN_VALUE를 그대로 적용하지만
+//   JdbcCursorItemReader(AbstractCursorItemReader)는 0 이상일 때만 적용하므로 statement에 직접 설정해야 함
+// - streaming 중인 connection에서는 결과를 다 읽거나 닫기 전까지 다른 query를 실행할 수 없음
+public final class StreamingFetchSize {
+
+    private StreamingFetchSize() {
+    }
+
+    public static int of(DataSource dataSource, int fetchSize) {
+        String product;
+        try {
+            product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            throw new DataAccessResourceFailureException("database product 조회 실패", e);
+        }
+        return "MySQL".equalsIgnoreCase(product) ? Integer.MIN_VALUE : fetchSize;
+    }
+}
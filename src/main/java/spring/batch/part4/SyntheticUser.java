@@ -0,0 +1,32 @@
+package spring.batch.part4;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+//대량 테스트 데이터 생성용 user, JDBC batch insert로 저장 (User entity를 거치지 않음)
+//id는 writer가 chunk 단위로 IdRangeAllocator에서 예약해서 붙임
+@Getter
+public class SyntheticUser {
+    private final String username;
+    private final List<Order> orders;
+
+    public SyntheticUser(String username, List<Order> orders) {
+        this.username = username;
+        this.orders = orders;
+    }
+
+    @Getter
+    public static class Order {
+        private final String itemName;
+        private final int amount;
+        private final LocalDate createdDate;
+
+        public Order(String itemName, int amount, LocalDate createdDate) {
+            this.itemName = itemName;
+            this.amount = amount;
+            this.createdDate = createdDate;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package spring.batch.part4;
+
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.util.ClassUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+//[fromIndex, toIndex] 번째 user를 메모리에 모아두지 않고 하나씩 생성하는 reader
+//user 하나의 값은 (seed, index)로만 정해지기 때문에 partition 수, thread 수, 재시작 여부와 관계없이 같은 데이터가 생성됨.
+//재시작 시에는 read count만큼 건너뛰기만 하면 됨
+public class SyntheticUserItemReader extends AbstractItemCountingItemStreamItemReader<SyntheticUser> {
+    private static final LocalDate START_DATE = LocalDate.of(2020, 11, 1);
+    private static final int DAYS = 61; //2020-11-01 ~ 2020-12-31
+
+    private final long fromIndex;
+    private final long seed;
+    private final int ordersPerUser;
+    private final AmountDistribution amountDistribution;
+
+    public SyntheticUserItemReader(long fromIndex, long toIndex, long seed, int ordersPerUser,
+                                   AmountDistribution amountDistribution) {
+        setName(ClassUtils.getShortName(SyntheticUserItemReader.class));
+        setMaxItemCount(Math.toIntExact(toIndex - fromIndex + 1));
+        this.fromIndex = fromIndex;
+        this.seed = seed;
+        this.ordersPerUser = ordersPerUser;
+        this.amountDistribution = amountDistribution;
+    }
+
+    @Override
+    protected SyntheticUser doRead() {
+        //read()에서 count를 먼저 증가시키므로 현재 item은 count - 1 번째
+        long index = fromIndex + getCurrentItemCount() - 1;
+        SplittableRandom random = new SplittableRandom(seed + index * 0x9E3779B97F4A7C15L);
+
+        List<SyntheticUser.Order> orders = new ArrayList<>(ordersPerUser);
+        for (int i = 0; i < ordersPerUser; i++) {
+            orders.add(new SyntheticUser.Order(
+                    "item" + index,
+                    amountDistribution.sample(random),
+                    START_DATE.plusDays(random.nextInt(DAYS))));
+        }
+        return new SyntheticUser("testUser" + index, orders);
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) {
+        //index로 바로 생성할 수 있으므로 앞의 item을 다시 만들 필요 없음
+    }
+
+    @Override
+    protected void doOpen() {
+    }
+
+    @Override
+    protected void doClose() {
+    }
+}
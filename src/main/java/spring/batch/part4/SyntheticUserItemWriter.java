@@ -0,0 +1,48 @@
+package spring.batch.part4;
+
+import org.springframework.batch.item.ItemWriter;
+import spring.batch.IdRangeAllocator;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+
+//chunk 단위로 user, orders를 각각 batch insert (MySQL은 rewriteBatchedStatements=true로 multi-row insert가 됨)
+//id는 JPA entity와 같은 hibernate_sequences에서 chunk 단위로 예약해서 직접 넣기 때문에
+//orders.user_id도 insert 시점에 같이 저장되어 별도 update가 없음
+public class SyntheticUserItemWriter implements ItemWriter<SyntheticUser> {
+    private static final String USER_SQL = "insert into user (id, username, level, total_amount) values (?, ?, ?, ?)";
+    private static final String ORDERS_SQL = "insert into orders (id, item_name, amount, created_date, user_id) values (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IdRangeAllocator idRangeAllocator;
+
+    public SyntheticUserItemWriter(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.idRangeAllocator = new IdRangeAllocator(dataSource);
+    }
+
+    @Override
+    public void write(List<? extends SyntheticUser> items) {
+        int orderCount = items.stream().mapToInt(user -> user.getOrders().size()).sum();
+        long userId = idRangeAllocator.allocate("user", items.size());
+        long orderId = orderCount > 0 ? idRangeAllocator.allocate("orders", orderCount) : 0;
+
+        List<Object[]> users = new ArrayList<>(items.size());
+        List<Object[]> orders = new ArrayList<>(orderCount);
+        for (SyntheticUser user : items) {
+            long totalAmount = 0;
+            for (SyntheticUser.Order order : user.getOrders()) {
+                totalAmount += order.getAmount();
+                orders.add(new Object[]{orderId++, order.getItemName(), order.getAmount(),
+                        Date.valueOf(order.getCreatedDate()), userId});
+            }
+            users.add(new Object[]{userId, user.getUsername(), User.Level.NORMAL.name(), totalAmount});
+            userId++;
+        }
+        jdbcTemplate.batchUpdate(USER_SQL, users);
+        jdbcTemplate.batchUpdate(ORDERS_SQL, orders);
+    }
+}
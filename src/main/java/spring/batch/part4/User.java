@@ -3,20 +3,30 @@ package spring.batch.part4;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import spring.batch.part5.Orders;
 
 import javax.persistence.*;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
 @Getter
 @Entity
 @NoArgsConstructor
-public class User {
+public class User implements LevelUpTarget {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    //IDENTITY는 insert 마다 id를 받아와야 해서 JDBC batch insert가 꺼짐. pooled-lo로 id를 1000개씩 미리 가져옴
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "user_id")
+    @GenericGenerator(name = "user_id", strategy = "org.hibernate.id.enhanced.TableGenerator", parameters = {
+            @Parameter(name = "table_name", value = "hibernate_sequences"),
+            @Parameter(name = "segment_value", value = "user"),
+            @Parameter(name = "increment_size", value = "1000"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
     private Long id;
 
     private String username;
@@ -25,29 +35,46 @@ public class User {
     private Level level = Level.NORMAL;
 
     //user 저장 시 order도 저장되도록 cascade 설정
-    //중간 테이블 없애기 위하여 @JoinColumn 추가
-    @OneToMany(cascade = CascadeType.PERSIST, fetch = FetchType.EAGER)
-    @JoinColumn(name = "user_id")
+    //user_id는 Orders.user가 관리 (mappedBy), 중간 테이블 없음
+    //등급 계산은 totalAmount를 사용하므로 LAZY. orders를 사용할 때는 persistence context에 있는 user들의 orders를
+    //user_id in (...) 한 번으로 가져옴 (reader page 단위)
+    @OneToMany(mappedBy = "user", cascade = CascadeType.PERSIST, fetch = FetchType.LAZY)
+    @BatchSize(size = 1000)
     private List<Orders> orders;
 
 
     private LocalDate updatedDate;
 
+    //orders 합계를 따로 저장 (orders 추가 시 같이 증가), 등급 계산 시 orders를 합산하지 않음
+    //기존 데이터는 userTotalAmountBackfillJob으로 채움
+    private long totalAmount;
+
     @Builder
     private User(String username, List<Orders> orders){
         this.username = username;
-        this.orders = orders;
+        this.orders = new ArrayList<>();
+        if (orders != null) {
+            orders.forEach(this::addOrder);
+        }
+    }
+
+    public void addOrder(Orders order) {
+        //연관관계 주인(Orders.user)에 값이 있어야 insert 시 user_id가 저장됨
+        order.setUser(this);
+        this.orders.add(order);
+        this.totalAmount += order.getAmount();
     }
 
+    @Override
     public boolean availableLevelUp() {
         return Level.availableLevelUp(this.getLevel(), this.getTotalAmount());
     }
 
 
-    private int getTotalAmount(){
-        return this.orders.stream()
-                .mapToInt(Orders::getAmount)
-                .sum();
+    //entity 상태를 바꾸지 않고 상향될 등급만 계산
+    @Override
+    public Level getNextLevel() {
+        return Level.getNextLevel(this.getTotalAmount());
     }
 
     public Level levelUp(){
@@ -74,7 +101,17 @@ public class User {
 
         }
 
-        private static boolean availableLevelUp(Level level, int totalAmount) {
+        //현재 등급에서 상향되기 위한 주문 합계 기준
+        int nextAmount() {
+            return nextAmount;
+        }
+
+        //상향될 등급 (VIP는 null)
+        Level nextLevel() {
+            return nextLevel;
+        }
+
+        static boolean availableLevelUp(Level level, long totalAmount) {
             if(Objects.isNull(level)){
                 return false;
             }
@@ -84,7 +121,7 @@ public class User {
             return totalAmount >= level.nextAmount;
         }
 
-        private static Level getNextLevel(int totalAmount) {
+        static Level getNextLevel(long totalAmount) {
             if(totalAmount >= Level.VIP.nextAmount)
                 return VIP;
             if(totalAmount >= Level.GOLD.nextAmount)
@@ -1,21 +1,27 @@
 package spring.batch.part4;
 
+import io.micrometer.core.instrument.util.StringUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.JobScope;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
 
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStreamReader;
 import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.database.JdbcCursorItemReader;
 import org.springframework.batch.item.database.JdbcPagingItemReader;
-import org.springframework.batch.item.database.JpaPagingItemReader;
 import org.springframework.batch.item.database.Order;
+import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
 import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
-import org.springframework.batch.item.database.builder.JpaPagingItemReaderBuilder;
 import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
 import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
@@ -24,8 +30,12 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.FileSystemResource;
+import spring.batch.JobHandoffStore;
 import spring.batch.part5.JobParameterDecider;
 import spring.batch.part5.OrderStatistics;
+import spring.batch.part6.AdaptiveChunkSizeCompletionPolicy;
+import spring.batch.part6.PrefetchingItemReader;
+import spring.batch.part6.UserLevelUpPartitioner;
 
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
@@ -40,19 +50,24 @@ import java.util.Map;
 public class UserConfiguration {
     private final String JOB_NAME = "userJob";
     private final int CHUNK = 1000;
+    private final int GRID_SIZE = 8;
     private final JobBuilderFactory jobBuilderFactory;
     private final StepBuilderFactory stepBuilderFactory;
     private final UserRepository userRepository;
     private final EntityManagerFactory entityManagerFactory;
     private final DataSource dataSource;
+    private final JobExplorer jobExplorer;
+    //saveUserStep -> userLevelUpStep(SNAPSHOT)으로 저장한 user snapshot 전달
+    private final JobHandoffStore handoffStore = new JobHandoffStore();
 
     public UserConfiguration(JobBuilderFactory jobBuilderFactory,
-                             StepBuilderFactory stepBuilderFactory, UserRepository userRepository, EntityManagerFactory entityManagerFactory, DataSource dataSource) {
+                             StepBuilderFactory stepBuilderFactory, UserRepository userRepository, EntityManagerFactory entityManagerFactory, DataSource dataSource, JobExplorer jobExplorer) {
         this.jobBuilderFactory = jobBuilderFactory;
         this.stepBuilderFactory = stepBuilderFactory;
         this.userRepository = userRepository;
         this.entityManagerFactory = entityManagerFactory;
         this.dataSource = dataSource;
+        this.jobExplorer = jobExplorer;
     }
 
     @Bean(JOB_NAME)
@@ -60,21 +75,23 @@ public class UserConfiguration {
         return jobBuilderFactory.get(JOB_NAME)
                 .incrementer(new RunIdIncrementer())
                 .start(this.saveUserStep())
-                .next(this. userLevelUpStep())
+                .next(this.userLevelUpStep(null, null, null, null))
                 .listener(new LevelUpJobExecutionListener(userRepository))
+                .listener(handoffStore)
                 .next(new JobParameterDecider("date"))
                 .on(JobParameterDecider.CONTINUE.getName())
-                .to(this.orderStatisticsStep(null, null))
+                .to(this.orderStatisticsStep(null, null, null))
                 .build()
                 .build();
     }
     @Bean(JOB_NAME+"_orderStatisticsStep")
     @JobScope // parameter 필요
     public Step orderStatisticsStep(@Value("#{jobParameters[date]}") String date,
-                                    @Value("#{jobParameters[path]}") String path) throws Exception {
+                                    @Value("#{jobParameters[path]}") String path,
+                                    @Value("#{jobParameters[pipeline]}") String pipeline) throws Exception {
         return stepBuilderFactory.get(JOB_NAME+"_orderStatisticsStep")
                 .<OrderStatistics, OrderStatistics> chunk(CHUNK)
-                .reader(orderStatisticsItemReader(date))
+                .reader(pipelined(orderStatisticsItemReader(date), pipeline))
                 .writer(orderStatisticsItemWriter(date, path))
                 .build();
     }
@@ -143,49 +160,195 @@ public class UserConfiguration {
     @Bean(JOB_NAME+"_saveUserStep")
     public Step saveUserStep() {
         return stepBuilderFactory.get(JOB_NAME+"_saveUserStep")
-                .tasklet(new SaveUserTasklet(userRepository))
+                .tasklet(new SaveUserTasklet(userRepository, handoffStore))
                 .build();
     }
 
     @Bean(JOB_NAME+"_userLevelUpStep")
-    public Step userLevelUpStep() throws Exception {
-        return stepBuilderFactory.get(JOB_NAME+"_userLevelUpStep")
-                .<User, User>chunk(CHUNK)
-                .reader(itemReader())
-                .processor(itemProcessor())
-                .writer(itemWriter())
-                .build();
+    @JobScope // mode, chunkSize, snapshot, pipeline parameter 필요
+    public Step userLevelUpStep(@Value("#{jobParameters[mode]}") String mode,
+                                @Value("#{jobParameters[chunkSize]}") String chunkSize,
+                                @Value("#{jobParameters[snapshot]}") String snapshot,
+                                @Value("#{jobParameters[pipeline]}") String pipeline) throws Exception {
+        //모든 mode에서 처리한 orders.id를 기록해서 다음 INCREMENTAL 실행의 기준으로 사용
+        OrdersHighWaterMark highWaterMark = new OrdersHighWaterMark(jobExplorer, dataSource, JOB_NAME);
 
+        switch (UserLevelUpMode.of(mode)) {
+            case AGGREGATE:
+                //User entity, orders 대신 (id, level, 주문 합계)만 읽음
+                return this.<UserLevelUp, UserLevelUp>userLevelUpStepBuilder(chunkSize, highWaterMark)
+                        .reader(pipelined(aggregateItemReader(), pipeline))
+                        .processor(this.<UserLevelUp>itemProcessor())
+                        .writer(this.<UserLevelUp>itemWriter())
+                        .build();
+            case ELIGIBLE:
+                //등급 상향 대상이 아닌 user는 DB에서 걸러냄 (processor는 그대로 두고 한 번 더 확인)
+                return this.<UserLevelUp, UserLevelUp>userLevelUpStepBuilder(chunkSize, highWaterMark)
+                        .reader(pipelined(eligibleItemReader(), pipeline))
+                        .processor(this.<UserLevelUp>itemProcessor())
+                        .writer(this.<UserLevelUp>itemWriter())
+                        .build();
+            case IN_DATABASE:
+                //UserLevelUpPartitioner 범위마다 update 한 번, 범위마다 commit
+                return stepBuilderFactory.get(JOB_NAME+"_userLevelUpStep")
+                        .tasklet(new UserLevelUpTasklet(dataSource, new UserLevelUpPartitioner(userRepository), GRID_SIZE))
+                        .listener(highWaterMark)
+                        .build();
+            case INCREMENTAL:
+                //이전 실행 이후 주문이 생긴 user 중 등급 상향 대상만 조회
+                return this.<UserLevelUp, UserLevelUp>userLevelUpStepBuilder(chunkSize, highWaterMark)
+                        .reader(pipelined(incrementalItemReader(highWaterMark), pipeline))
+                        .processor(this.<UserLevelUp>itemProcessor())
+                        .writer(this.<UserLevelUp>itemWriter())
+                        .build();
+            case DENORMALIZED:
+                //orders 합계 대신 저장된 total_amount로 대상만 조회
+                return this.<UserLevelUp, UserLevelUp>userLevelUpStepBuilder(chunkSize, highWaterMark)
+                        .reader(pipelined(denormalizedItemReader(), pipeline))
+                        .processor(this.<UserLevelUp>itemProcessor())
+                        .writer(this.<UserLevelUp>itemWriter())
+                        .build();
+            case MERGE_JOIN:
+                return this.<UserLevelUp, UserLevelUp>userLevelUpStepBuilder(chunkSize, highWaterMark)
+                        .reader(pipelined(mergeItemReader(), pipeline))
+                        .processor(this.<UserLevelUp>itemProcessor())
+                        .writer(this.<UserLevelUp>itemWriter())
+                        .build();
+            case SNAPSHOT:
+                //전체 user를 primitive snapshot(snapshot=HEAP|DIRECT|MAPPED)으로 올려서 fork/join으로 계산, 바뀌는 user만 update
+                UserLevelSnapshotTasklet snapshotTasklet =
+                        new UserLevelSnapshotTasklet(dataSource, UserLevelSnapshot.Backing.of(snapshot), CHUNK);
+                snapshotTasklet.setHandoffStore(handoffStore);
+                return stepBuilderFactory.get(JOB_NAME+"_userLevelUpStep")
+                        .tasklet(snapshotTasklet)
+                        .listener(highWaterMark)
+                        .build();
+            default:
+                return this.<User, User>userLevelUpStepBuilder(chunkSize, highWaterMark)
+                        .reader(pipelined(itemReader(), pipeline))
+                        .processor(this.<User>itemProcessor())
+                        .writer(this.<User>itemWriter())
+                        .build();
+        }
     }
 
-    private ItemWriter<? super User> itemWriter() {
-        return users -> { users.forEach(x-> {
-                x.levelUp();
-                userRepository.save(x);//update
-            });
-        };
+    //chunkSize=auto 이면 commit 시간, 메모리 할당량을 보고 chunk size를 조절. 없으면 CHUNK 고정
+    private <I, O> SimpleStepBuilder<I, O> userLevelUpStepBuilder(String chunkSize, OrdersHighWaterMark highWaterMark) {
+        SimpleStepBuilder<I, O> builder;
+        if ("auto".equalsIgnoreCase(chunkSize)) {
+            AdaptiveChunkSizeCompletionPolicy completionPolicy = new AdaptiveChunkSizeCompletionPolicy(
+                    JOB_NAME+"_userLevelUpStep", CHUNK, 100, 10_000, 1_000, 64 * 1024 * 1024);
+            builder = stepBuilderFactory.get(JOB_NAME+"_userLevelUpStep")
+                    .<I, O>chunk(completionPolicy);
+            //listener(ChunkListener)는 AbstractTaskletStepBuilder를 반환하므로 체이닝하지 않음
+            builder.listener((ChunkListener) completionPolicy);
+        } else {
+            builder = stepBuilderFactory.get(JOB_NAME+"_userLevelUpStep")
+                    .<I, O>chunk(StringUtils.isNotEmpty(chunkSize) ? Integer.parseInt(chunkSize) : CHUNK);
+        }
+        builder.listener((StepExecutionListener) highWaterMark);
+        return builder;
+    }
+
+    //pipeline=true 이면 chunk를 처리하는 동안 다음 page를 별도 thread에서 미리 읽음 (reader가 ItemStream인 경우만)
+    @SuppressWarnings("unchecked")
+    private <T> ItemReader<T> pipelined(ItemReader<? extends T> itemReader, String pipeline) {
+        if (!Boolean.parseBoolean(pipeline) || !(itemReader instanceof ItemStreamReader)) {
+            return (ItemReader<T>) itemReader;
+        }
+        PrefetchingItemReader<T> prefetchingItemReader =
+                new PrefetchingItemReader<>((ItemStreamReader<? extends T>) itemReader, CHUNK, 2);
+        prefetchingItemReader.setName(JOB_NAME+ "_prefetchingItemReader");
+        return prefetchingItemReader;
+    }
+
+    private <T extends LevelUpTarget> ItemWriter<T> itemWriter() {
+        return new UserLevelUpItemWriter<>(dataSource);
     }
 
-    private ItemProcessor<? super User,? extends User> itemProcessor() {
-        return user -> {
-            if(user.availableLevelUp()){
-                return user;
+    private <T extends LevelUpTarget> ItemProcessor<T, T> itemProcessor() {
+        return item -> {
+            if(item.availableLevelUp()){
+                return item;
             }
             return null;
         };
     }
 
-    private ItemReader<? extends User> itemReader() throws Exception {
-        //JpaPagingItemReader
-        JpaPagingItemReader itemReader = new JpaPagingItemReaderBuilder<User>()
-                .name(JOB_NAME+ "_jpaPagingItemReader")
-                .entityManagerFactory(entityManagerFactory)
-                .queryString("select u from User u")
-                .pageSize(CHUNK) //보통 chunk size와 동일하게 설정함.
+    private ItemReader<UserLevelUp> aggregateItemReader() throws Exception {
+        //user별 주문 합계를 DB에서 group by로 계산해서 cursor로 읽음 (orders N+1 조회 없음)
+        JdbcCursorItemReader<UserLevelUp> itemReader = new JdbcCursorItemReaderBuilder<UserLevelUp>()
+                .name(JOB_NAME+ "_aggregateItemReader")
+                .dataSource(dataSource)
+                .sql("select u.id, u.level, coalesce(sum(o.amount), 0) from user u " +
+                        "left join orders o on o.user_id = u.id " +
+                        "group by u.id, u.level order by u.id")
+                .rowMapper(UserLevelUp.ROW_MAPPER)
+                .fetchSize(CHUNK)
                 .build();
         itemReader.afterPropertiesSet();
         return itemReader;
     }
 
+    private ItemReader<UserLevelUp> eligibleItemReader() {
+        //주문 합계가 현재 등급의 기준 금액(User.Level.nextAmount) 이상인 user만 조회
+        return levelUpCursorItemReader("_eligibleItemReader",
+                "select u.id, u.level, coalesce(sum(o.amount), 0) from user u " +
+                        "left join orders o on o.user_id = u.id " +
+                        "where u.level in (" + UserLevelUpSql.upgradableLevels() + ") " +
+                        "and u.id > ? " +
+                        "group by u.id, u.level " +
+                        "having coalesce(sum(o.amount), 0) >= " + UserLevelUpSql.nextAmountCase("u.level") + " " +
+                        "order by u.id");
+    }
+
+    private ItemReader<UserLevelUp> incrementalItemReader(OrdersHighWaterMark highWaterMark) {
+        //high-water mark는 beforeStep에서 정해지므로 reader open 시점에 parameter로 설정
+        //orders.id가 commit 순서가 아니므로 mark 보다 safetyMargin 만큼 앞의 주문부터 확인 (OrdersHighWaterMark)
+        UserLevelUpCursorItemReader itemReader = levelUpCursorItemReader("_incrementalItemReader",
+                "select u.id, u.level, coalesce(sum(o.amount), 0) from user u " +
+                        "left join orders o on o.user_id = u.id " +
+                        "where u.id in (select n.user_id from orders n where n.id > ?) " +
+                        "and u.level in (" + UserLevelUpSql.upgradableLevels() + ") " +
+                        "and u.id > ? " +
+                        "group by u.id, u.level " +
+                        "having coalesce(sum(o.amount), 0) >= " + UserLevelUpSql.nextAmountCase("u.level") + " " +
+                        "order by u.id");
+        itemReader.setArguments(() -> new Object[]{highWaterMark.getLowerBound()});
+        return itemReader;
+    }
+
+    private ItemReader<UserLevelUp> denormalizedItemReader() {
+        return levelUpCursorItemReader("_denormalizedItemReader",
+                "select id, level, total_amount from user " +
+                        "where level in (" + UserLevelUpSql.upgradableLevels() + ") " +
+                        "and total_amount >= " + UserLevelUpSql.nextAmountCase("level") + " " +
+                        "and id > ? " +
+                        "order by id");
+    }
+
+    //등급을 올린 user는 조회 결과에서 빠지므로 read.count가 아니라 마지막으로 읽은 id 다음부터 재시작
+    private UserLevelUpCursorItemReader levelUpCursorItemReader(String name, String sql) {
+        UserLevelUpCursorItemReader itemReader = new UserLevelUpCursorItemReader(dataSource, sql);
+        itemReader.setName(JOB_NAME+ name);
+        itemReader.setFetchSize(CHUNK);
+        return itemReader;
+    }
+
+    private UserOrderMergeItemReader mergeItemReader() {
+        //MySQL은 reader가 streaming(fetchSize Integer.MIN_VALUE)으로 읽음
+        UserOrderMergeItemReader itemReader = new UserOrderMergeItemReader(dataSource);
+        itemReader.setName(JOB_NAME+ "_userOrderMergeItemReader");
+        itemReader.setFetchSize(CHUNK);
+        return itemReader;
+    }
+
+    private ItemReader<? extends User> itemReader() throws Exception {
+        //JpaPagingItemReader(offset 조회) 대신 id 기준 keyset 조회
+        UserKeysetItemReader itemReader = new UserKeysetItemReader(entityManagerFactory, CHUNK);
+        itemReader.setName(JOB_NAME+ "_userKeysetItemReader");
+        return itemReader;
+    }
+
 
 }
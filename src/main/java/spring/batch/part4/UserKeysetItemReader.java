@@ -0,0 +1,128 @@
+package spring.batch.part4;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.util.ClassUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+import java.util.Collections;
+import java.util.List;
+
+//offset 대신 마지막으로 읽은 id 기준으로 다음 page를 조회하는 reader
+//where u.id > :lastId order by u.id 로 조회하기 때문에 page가 뒤로 갈수록 느려지지 않고,
+//중간에 row가 추가되어도 이미 읽은 id를 다시 읽거나 건너뛰지 않음.
+//thread-safe 하지 않음 (단일 thread 또는 partition step 별로 생성해서 사용)
+public class UserKeysetItemReader extends AbstractItemCountingItemStreamItemReader<User> {
+    private static final String LAST_ID = "lastId";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final int pageSize;
+    private final Long minId;
+    private final Long maxId;
+
+    private EntityManager entityManager;
+    private List<User> page = Collections.emptyList();
+    private int current = 0;
+    private boolean lastPage = false;
+    private Long lastId;
+
+    public UserKeysetItemReader(EntityManagerFactory entityManagerFactory, int pageSize) {
+        this(entityManagerFactory, pageSize, null, null);
+    }
+
+    //partition step에서는 UserLevelUpPartitioner가 만든 minId, maxId 범위만 조회
+    public UserKeysetItemReader(EntityManagerFactory entityManagerFactory, int pageSize, Long minId, Long maxId) {
+        setName(ClassUtils.getShortName(UserKeysetItemReader.class));
+        this.entityManagerFactory = entityManagerFactory;
+        this.pageSize = pageSize;
+        this.minId = minId;
+        this.maxId = maxId;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        //재시작 시 read count 만큼 다시 읽지 않고 저장된 lastId 다음부터 조회
+        if (isSaveState() && executionContext.containsKey(getExecutionContextKey(LAST_ID))) {
+            this.lastId = executionContext.getLong(getExecutionContextKey(LAST_ID));
+        }
+        super.open(executionContext);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        super.update(executionContext);
+        if (isSaveState() && lastId != null) {
+            executionContext.putLong(getExecutionContextKey(LAST_ID), lastId);
+        }
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) {
+        //위치는 lastId로 복원하기 때문에 앞의 item을 다시 읽을 필요 없음
+    }
+
+    @Override
+    protected void doOpen() {
+        this.entityManager = entityManagerFactory.createEntityManager();
+    }
+
+    @Override
+    protected User doRead() {
+        if (current >= page.size()) {
+            if (lastPage) {
+                return null;
+            }
+            page = readPage();
+            current = 0;
+            lastPage = page.size() < pageSize;
+            if (page.isEmpty()) {
+                return null;
+            }
+        }
+
+        User user = page.get(current++);
+        lastId = user.getId();
+        return user;
+    }
+
+    private List<User> readPage() {
+        //이전 page의 entity는 이미 writer까지 처리되었으므로 persistence context를 비움
+        entityManager.clear();
+
+        StringBuilder queryString = new StringBuilder("select u from User u where 1 = 1");
+        if (lastId != null) {
+            queryString.append(" and u.id > :lastId");
+        } else if (minId != null) {
+            queryString.append(" and u.id >= :minId");
+        }
+        if (maxId != null) {
+            queryString.append(" and u.id <= :maxId");
+        }
+        queryString.append(" order by u.id");
+
+        TypedQuery<User> query = entityManager.createQuery(queryString.toString(), User.class)
+                .setMaxResults(pageSize);
+        if (lastId != null) {
+            query.setParameter("lastId", lastId);
+        } else if (minId != null) {
+            query.setParameter("minId", minId);
+        }
+        if (maxId != null) {
+            query.setParameter("maxId", maxId);
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    protected void doClose() {
+        if (entityManager != null) {
+            entityManager.close();
+        }
+        page = Collections.emptyList();
+        current = 0;
+        lastPage = false;
+        lastId = null;
+    }
+}
@@ -0,0 +1,94 @@
+package spring.batch.part4;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ForkJoinPool;
+
+//등급 기준 금액을 바꾸면 user가 얼마나 이동하는지 확인하는 job (DB에 아무것도 쓰지 않음)
+//user를 한 번만 읽어서 snapshot을 만들고, job parameter(scenarios)의 모든 기준표를 한 번의 병렬 계산으로 비교
+//결과는 로그와 step ExecutionContext(transitions.<이름>)에 "NORMAL->SILVER=12,..." 형식으로 남김
+@Configuration
+@Slf4j
+public class UserLevelSimulationConfiguration {
+    private final String JOB_NAME = "userLevelSimulationJob";
+    private final int CHUNK = 1000;
+    private final JobBuilderFactory jobBuilderFactory;
+    private final StepBuilderFactory stepBuilderFactory;
+    private final DataSource dataSource;
+
+    public UserLevelSimulationConfiguration(JobBuilderFactory jobBuilderFactory,
+                                            StepBuilderFactory stepBuilderFactory, DataSource dataSource) {
+        this.jobBuilderFactory = jobBuilderFactory;
+        this.stepBuilderFactory = stepBuilderFactory;
+        this.dataSource = dataSource;
+    }
+
+    @Bean(JOB_NAME)
+    public Job userLevelSimulationJob() {
+        return jobBuilderFactory.get(JOB_NAME)
+                .incrementer(new RunIdIncrementer())
+                .start(this.simulationStep())
+                .build();
+    }
+
+    @Bean(JOB_NAME + "_simulationStep")
+    public Step simulationStep() {
+        return stepBuilderFactory.get(JOB_NAME + "_simulationStep")
+                .tasklet(this.simulationTasklet(null, null))
+                .build();
+    }
+
+    @Bean(JOB_NAME + "_simulationTasklet")
+    @StepScope
+    public Tasklet simulationTasklet(@Value("#{jobParameters[scenarios]}") String scenarios,
+                                     @Value("#{jobParameters[snapshot]}") String snapshot) {
+        List<LevelThresholds> thresholds = LevelThresholds.of(scenarios);
+
+        return (contribution, chunkContext) -> {
+            long[][][] transitions;
+            int size;
+            try (UserLevelSnapshot userLevelSnapshot =
+                         UserLevelSnapshot.load(dataSource, UserLevelSnapshot.Backing.of(snapshot), CHUNK)) {
+                size = userLevelSnapshot.size();
+                transitions = userLevelSnapshot.transitions(thresholds, ForkJoinPool.commonPool());
+            }
+            contribution.getStepExecution().setReadCount(size);
+
+            ExecutionContext executionContext = contribution.getStepExecution().getExecutionContext();
+            User.Level[] levels = User.Level.values();
+            for (int scenario = 0; scenario < thresholds.size(); scenario++) {
+                //등급이 바뀌는 칸만 기록 (대각선 = 그대로인 user)
+                StringJoiner moved = new StringJoiner(",");
+                long movedCount = 0;
+                for (User.Level level : levels) {
+                    for (User.Level next : levels) {
+                        long count = transitions[scenario][level.ordinal()][next.ordinal()];
+                        if (level != next && count > 0) {
+                            moved.add(level + "->" + next + "=" + count);
+                            movedCount += count;
+                        }
+                    }
+                }
+                String name = thresholds.get(scenario).getName();
+                log.info("시나리오 {}: user {} 명 중 {} 명 등급 상향 [{}]", name, size, movedCount, moved);
+                executionContext.putString("transitions." + name, moved.toString());
+            }
+            return RepeatStatus.FINISHED;
+        };
+    }
+}
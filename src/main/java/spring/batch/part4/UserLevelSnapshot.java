@@ -0,0 +1,248 @@
+package spring.batch.part4;
+
+import io.micrometer.core.instrument.util.StringUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+//전체 user의 (id, 주문 합계, 등급)을 entity 대신 column 별 primitive buffer에 담은 snapshot
+//user 하나당 17 byte (id 8, 합계 8, 등급 1), 객체를 만들지 않으므로 GC 부담이 거의 없음
+// - HEAP: long[], byte[] / DIRECT: off-heap / MAPPED: 임시 파일에 memory-mapped (heap, 물리 메모리보다 큰 경우)
+// - column 하나가 ByteBuffer 하나이므로 최대 약 2억 6천만 user
+//changedPositions()는 fork/join으로 나누어서 등급이 바뀌는 user의 위치만 반환
+//transitions()는 같은 방식으로 여러 등급 기준표(LevelThresholds)의 등급 이동 행렬을 한 번에 계산
+//load는 user 전체를 한 번에 읽으므로 MySQL은 fetchSize Integer.MIN_VALUE로 streaming (StreamingFetchSize)
+//→ driver가 결과 전체를 메모리에 올리지 않고, snapshot buffer 외에 user 수에 비례하는 메모리를 쓰지 않음
+//thread-safe 하지 않음 (add가 끝난 뒤의 조회는 여러 thread에서 가능)
+@Slf4j
+public class UserLevelSnapshot implements AutoCloseable {
+    private static final User.Level[] LEVELS = User.Level.values();
+    private static final int THRESHOLD = 1 << 16; //fork/join leaf 크기
+
+    public enum Backing {
+        HEAP, DIRECT, MAPPED;
+
+        public static Backing of(String backing) {
+            if (StringUtils.isEmpty(backing)) {
+                return HEAP;
+            }
+            return valueOf(backing.toUpperCase());
+        }
+    }
+
+    private final int capacity;
+    private final LongBuffer ids;
+    private final LongBuffer totalAmounts;
+    private final ByteBuffer levels;
+    private final FileChannel channel;
+    private int size = 0;
+
+    private UserLevelSnapshot(int capacity, LongBuffer ids, LongBuffer totalAmounts, ByteBuffer levels, FileChannel channel) {
+        this.capacity = capacity;
+        this.ids = ids;
+        this.totalAmounts = totalAmounts;
+        this.levels = levels;
+        this.channel = channel;
+    }
+
+    public static UserLevelSnapshot allocate(int capacity, Backing backing) throws IOException {
+        switch (backing) {
+            case DIRECT:
+                return new UserLevelSnapshot(capacity,
+                        ByteBuffer.allocateDirect(Math.multiplyExact(capacity, Long.BYTES)).order(ByteOrder.nativeOrder()).asLongBuffer(),
+                        ByteBuffer.allocateDirect(Math.multiplyExact(capacity, Long.BYTES)).order(ByteOrder.nativeOrder()).asLongBuffer(),
+                        ByteBuffer.allocateDirect(capacity), null);
+            case MAPPED:
+                //close 시 파일 삭제
+                FileChannel channel = FileChannel.open(Files.createTempFile("user-level-snapshot", ".bin"),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+                long longColumn = (long) capacity * Long.BYTES;
+                return new UserLevelSnapshot(capacity,
+                        channel.map(FileChannel.MapMode.READ_WRITE, 0, longColumn).order(ByteOrder.nativeOrder()).asLongBuffer(),
+                        channel.map(FileChannel.MapMode.READ_WRITE, longColumn, longColumn).order(ByteOrder.nativeOrder()).asLongBuffer(),
+                        channel.map(FileChannel.MapMode.READ_WRITE, longColumn * 2, capacity), channel);
+            default:
+                return new UserLevelSnapshot(capacity,
+                        LongBuffer.wrap(new long[capacity]),
+                        LongBuffer.wrap(new long[capacity]),
+                        ByteBuffer.wrap(new byte[capacity]), null);
+        }
+    }
+
+    //user 테이블의 id, level, total_amount를 id 순서로 읽어서 snapshot 생성
+    public static UserLevelSnapshot load(DataSource dataSource, Backing backing, int fetchSize) throws IOException {
+        return load(dataSource, backing, fetchSize, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    //minId ~ maxId 범위의 user만 읽음 (SaveUserTasklet이 저장한 user 범위로 재시작할 때)
+    public static UserLevelSnapshot load(DataSource dataSource, Backing backing, int fetchSize,
+                                         long minId, long maxId) throws IOException {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        //JdbcTemplate은 Integer.MIN_VALUE도 statement에 그대로 설정함
+        jdbcTemplate.setFetchSize(StreamingFetchSize.of(dataSource, fetchSize));
+        int count = Math.toIntExact(jdbcTemplate.queryForObject(
+                "select count(*) from user where id between ? and ?", Long.class, minId, maxId));
+
+        UserLevelSnapshot snapshot = allocate(count, backing);
+        long[] skipped = {0};
+        jdbcTemplate.query("select id, level, total_amount from user where id between ? and ? order by id", resultSet -> {
+            //count 이후에 추가된 user는 다음 실행에서 처리
+            if (snapshot.size() == snapshot.capacity) {
+                skipped[0]++;
+                return;
+            }
+            String level = resultSet.getString(2);
+            snapshot.add(resultSet.getLong(1), level == null ? null : User.Level.valueOf(level), resultSet.getLong(3));
+        }, minId, maxId);
+        if (skipped[0] > 0) {
+            log.warn("snapshot 생성 중 추가된 user {} 명 제외", skipped[0]);
+        }
+        return snapshot;
+    }
+
+    public void add(long id, User.Level level, long totalAmount) {
+        if (size == capacity) {
+            throw new IllegalStateException("snapshot capacity exceeded: " + capacity);
+        }
+        ids.put(size, id);
+        totalAmounts.put(size, totalAmount);
+        //등급이 없으면 -1 (등급 상향 대상 아님)
+        levels.put(size, level == null ? -1 : (byte) level.ordinal());
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long id(int position) {
+        return ids.get(position);
+    }
+
+    public long totalAmount(int position) {
+        return totalAmounts.get(position);
+    }
+
+    public User.Level level(int position) {
+        byte ordinal = levels.get(position);
+        return ordinal < 0 ? null : LEVELS[ordinal];
+    }
+
+    public User.Level nextLevel(int position) {
+        return User.Level.getNextLevel(totalAmount(position));
+    }
+
+    //등급이 바뀌는 user의 위치 (id 순서)
+    public int[] changedPositions(ForkJoinPool pool) {
+        return pool.invoke(new ChangedTask(0, size));
+    }
+
+    //시나리오마다 [현재 등급][상향 후 등급] user 수, snapshot을 한 번만 훑으면서 모든 시나리오를 같이 계산 (등급이 없는 user 제외)
+    public long[][][] transitions(List<LevelThresholds> scenarios, ForkJoinPool pool) {
+        return pool.invoke(new TransitionTask(scenarios.toArray(new LevelThresholds[0]), 0, size));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private boolean changed(int position) {
+        return User.Level.availableLevelUp(level(position), totalAmount(position));
+    }
+
+    private class ChangedTask extends RecursiveTask<int[]> {
+        private final int from;
+        private final int to;
+
+        private ChangedTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= THRESHOLD) {
+                int[] result = new int[16];
+                int count = 0;
+                for (int position = from; position < to; position++) {
+                    if (changed(position)) {
+                        if (count == result.length) {
+                            result = Arrays.copyOf(result, count * 2);
+                        }
+                        result[count++] = position;
+                    }
+                }
+                return Arrays.copyOf(result, count);
+            }
+
+            int middle = (from + to) >>> 1;
+            ChangedTask left = new ChangedTask(from, middle);
+            left.fork();
+            int[] right = new ChangedTask(middle, to).compute();
+            int[] leftResult = left.join();
+
+            int[] result = Arrays.copyOf(leftResult, leftResult.length + right.length);
+            System.arraycopy(right, 0, result, leftResult.length, right.length);
+            return result;
+        }
+    }
+
+    private class TransitionTask extends RecursiveTask<long[][][]> {
+        private final LevelThresholds[] scenarios;
+        private final int from;
+        private final int to;
+
+        private TransitionTask(LevelThresholds[] scenarios, int from, int to) {
+            this.scenarios = scenarios;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[][][] compute() {
+            if (to - from <= THRESHOLD) {
+                long[][][] result = new long[scenarios.length][LEVELS.length][LEVELS.length];
+                for (int position = from; position < to; position++) {
+                    byte ordinal = levels.get(position);
+                    if (ordinal < 0) {
+                        continue;
+                    }
+                    long totalAmount = totalAmounts.get(position);
+                    for (int scenario = 0; scenario < scenarios.length; scenario++) {
+                        result[scenario][ordinal][scenarios[scenario].nextLevelOrdinal(ordinal, totalAmount)]++;
+                    }
+                }
+                return result;
+            }
+
+            int middle = (from + to) >>> 1;
+            TransitionTask left = new TransitionTask(scenarios, from, middle);
+            left.fork();
+            long[][][] result = new TransitionTask(scenarios, middle, to).compute();
+            long[][][] leftResult = left.join();
+            for (int scenario = 0; scenario < result.length; scenario++) {
+                for (int level = 0; level < LEVELS.length; level++) {
+                    for (int next = 0; next < LEVELS.length; next++) {
+                        result[scenario][level][next] += leftResult[scenario][level][next];
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package spring.batch.part4;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.repeat.RepeatStatus;
+import spring.batch.JobHandoffStore;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+//beforeStep에서 전체 user를 UserLevelSnapshot에 올리고 등급이 바뀌는 user만 골라서
+//batchSize개씩 UserLevelUpItemWriter로 update (batch마다 CONTINUABLE → batch마다 commit)
+//등급을 올린 user는 다시 계산해도 대상이 아니므로, 재시작하면 snapshot을 새로 만들어서 남은 user만 처리
+//같은 job 실행에서 SaveUserTasklet이 handoff로 넘긴 snapshot이 있으면 그 user(이번에 저장한 user)만 처리
+//재시작으로 handoff가 없으면 저장된 user id 범위로 DB에서 다시 읽어서 같은 user를 대상으로 함
+@Slf4j
+public class UserLevelSnapshotTasklet implements Tasklet, StepExecutionListener {
+    private final DataSource dataSource;
+    private final UserLevelSnapshot.Backing backing;
+    private final int batchSize;
+    private final UserLevelUpItemWriter<UserLevelUp> itemWriter;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private JobHandoffStore handoffStore;
+
+    private UserLevelSnapshot snapshot;
+    private boolean loaded;
+    private int[] changed = new int[0];
+    private int cursor = 0;
+
+    public UserLevelSnapshotTasklet(DataSource dataSource, UserLevelSnapshot.Backing backing, int batchSize) {
+        this.dataSource = dataSource;
+        this.backing = backing;
+        this.batchSize = batchSize;
+        this.itemWriter = new UserLevelUpItemWriter<>(dataSource);
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    //이전 step(SaveUserTasklet)이 넘겨준 snapshot이 있으면 DB를 다시 읽지 않고 사용
+    public void setHandoffStore(JobHandoffStore handoffStore) {
+        this.handoffStore = handoffStore;
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        try {
+            long start = System.currentTimeMillis();
+            UserLevelSnapshot handoff = handoffStore == null ? null :
+                    handoffStore.get(stepExecution.getJobExecution(), SaveUserTasklet.HANDOFF_KEY, UserLevelSnapshot.class);
+            //handoff가 없으면(재시작 등) DB에서 다시 읽음
+            //SaveUserTasklet이 저장한 user 범위가 있으면 그 범위만 (handoff와 같은 user 대상), 없으면 전체
+            this.loaded = handoff == null;
+            this.snapshot = loaded ? load(stepExecution.getJobExecution().getExecutionContext()) : handoff;
+            this.changed = snapshot.changedPositions(pool);
+            this.cursor = 0;
+            log.info("snapshot({}, {}) user {} 명 중 등급 상향 {} 명, {}ms",
+                    backing, loaded ? "DB" : "handoff", snapshot.size(), changed.length, System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            throw new ItemStreamException("user snapshot 생성 실패", e);
+        }
+    }
+
+    private UserLevelSnapshot load(ExecutionContext jobContext) throws IOException {
+        if (jobContext.containsKey(SaveUserTasklet.SAVED_MIN_ID) && jobContext.containsKey(SaveUserTasklet.SAVED_MAX_ID)) {
+            return UserLevelSnapshot.load(dataSource, backing, batchSize,
+                    jobContext.getLong(SaveUserTasklet.SAVED_MIN_ID), jobContext.getLong(SaveUserTasklet.SAVED_MAX_ID));
+        }
+        return UserLevelSnapshot.load(dataSource, backing, batchSize);
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        try {
+            //handoff로 받은 snapshot은 JobHandoffStore가 job 종료 시 close
+            if (snapshot != null && loaded) {
+                snapshot.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            this.snapshot = null;
+            this.changed = new int[0];
+        }
+        return null;
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        if (cursor >= changed.length) {
+            return RepeatStatus.FINISHED;
+        }
+
+        int end = Math.min(cursor + batchSize, changed.length);
+        List<UserLevelUp> items = new ArrayList<>(end - cursor);
+        for (int i = cursor; i < end; i++) {
+            int position = changed[i];
+            items.add(UserLevelUp.builder()
+                    .id(snapshot.id(position))
+                    .level(snapshot.level(position))
+                    .totalAmount(snapshot.totalAmount(position))
+                    .build());
+        }
+        itemWriter.write(items);
+
+        contribution.incrementWriteCount(items.size());
+        cursor = end;
+        return cursor < changed.length ? RepeatStatus.CONTINUABLE : RepeatStatus.FINISHED;
+    }
+}
@@ -0,0 +1,43 @@
+package spring.batch.part4;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.springframework.jdbc.core.RowMapper;
+
+//User entity 대신 등급 계산에 필요한 값만 담는 조회 전용 객체 (orders를 로딩하지 않음)
+@Getter
+public class UserLevelUp implements LevelUpTarget {
+    //select 순서: id, level, 주문 합계
+    public static final RowMapper<UserLevelUp> ROW_MAPPER = (resultSet, i) -> UserLevelUp.builder()
+            .id(resultSet.getLong(1))
+            .level(resultSet.getString(2) == null ? null : User.Level.valueOf(resultSet.getString(2)))
+            .totalAmount(resultSet.getLong(3))
+            .build();
+
+    private final Long id;
+
+    private final User.Level level;
+
+    private final long totalAmount;
+
+    //주문 건수 (UserOrderMergeItemReader만 채움, 나머지는 0)
+    private final long orderCount;
+
+    @Builder
+    public UserLevelUp(Long id, User.Level level, long totalAmount, long orderCount) {
+        this.id = id;
+        this.level = level;
+        this.totalAmount = totalAmount;
+        this.orderCount = orderCount;
+    }
+
+    @Override
+    public boolean availableLevelUp() {
+        return User.Level.availableLevelUp(this.level, this.totalAmount);
+    }
+
+    @Override
+    public User.Level getNextLevel() {
+        return User.Level.getNextLevel(this.totalAmount);
+    }
+}
@@ -0,0 +1,102 @@
+package spring.batch.part4;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+//등급 상향 대상만 조회하는 cursor reader (ELIGIBLE, INCREMENTAL, DENORMALIZED)
+//등급을 올린 user는 조회 조건에서 빠지므로 commit 된 chunk 만큼 결과가 줄어듦
+//→ read.count 만큼 건너뛰는 JdbcCursorItemReader 재시작은 남은 user를 건너뛰게 되므로 마지막으로 읽은 id 다음부터 다시 조회
+// - sql은 id 순서로 정렬하고, 마지막 ?에 "id > ?" 조건을 둠 (처음 실행 시 Long.MIN_VALUE)
+// - 그 앞의 ?는 arguments로 open 시점에 계산 (OrdersHighWaterMark 처럼 beforeStep에서 정해지는 값)
+//thread-safe 하지 않음
+public class UserLevelUpCursorItemReader extends AbstractItemCountingItemStreamItemReader<UserLevelUp> {
+    private static final String LAST_ID = "lastId";
+
+    private final DataSource dataSource;
+    private final String sql;
+    private Supplier<Object[]> arguments = () -> new Object[0];
+    private int fetchSize = 1000;
+
+    private JdbcCursorItemReader<UserLevelUp> cursor;
+    private Long lastId;
+
+    public UserLevelUpCursorItemReader(DataSource dataSource, String sql) {
+        setName(ClassUtils.getShortName(UserLevelUpCursorItemReader.class));
+        this.dataSource = dataSource;
+        this.sql = sql;
+    }
+
+    public void setArguments(Supplier<Object[]> arguments) {
+        this.arguments = arguments;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        if (isSaveState() && executionContext.containsKey(getExecutionContextKey(LAST_ID))) {
+            this.lastId = executionContext.getLong(getExecutionContextKey(LAST_ID));
+        }
+        super.open(executionContext);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        super.update(executionContext);
+        if (isSaveState() && lastId != null) {
+            executionContext.putLong(getExecutionContextKey(LAST_ID), lastId);
+        }
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) {
+        //cursor를 lastId 다음부터 열기 때문에 read count만 복원하면 됨
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        Object[] leading = arguments.get();
+        Object[] args = Arrays.copyOf(leading, leading.length + 1);
+        args[leading.length] = lastId != null ? lastId : Long.MIN_VALUE;
+
+        cursor = new JdbcCursorItemReaderBuilder<UserLevelUp>()
+                .name(getExecutionContextKey("cursor"))
+                .saveState(false)
+                .dataSource(dataSource)
+                .sql(sql)
+                .preparedStatementSetter(new ArgumentPreparedStatementSetter(args))
+                .rowMapper(UserLevelUp.ROW_MAPPER)
+                .fetchSize(fetchSize)
+                .build();
+        cursor.afterPropertiesSet();
+        cursor.open(new ExecutionContext());
+    }
+
+    @Override
+    protected UserLevelUp doRead() throws Exception {
+        UserLevelUp item = cursor.read();
+        if (item != null) {
+            lastId = item.getId();
+        }
+        return item;
+    }
+
+    @Override
+    protected void doClose() {
+        if (cursor != null) {
+            cursor.close();
+        }
+        cursor = null;
+        lastId = null;
+    }
+}
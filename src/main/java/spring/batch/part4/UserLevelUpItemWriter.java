@@ -0,0 +1,40 @@
+package spring.batch.part4;
+
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+public class UserLevelUpItemWriter<T extends LevelUpTarget> implements ItemWriter<T> {
+    private static final String UPDATE_SQL = "update user set level = :level, updated_date = :updatedDate where id in (:ids)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public UserLevelUpItemWriter(DataSource dataSource) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    @Override
+    public void write(List<? extends T> items) throws Exception {
+        //user 별로 save(merge + update) 하지 않고, 다음 등급 기준으로 묶어서 등급당 update 한 번만 실행
+        //entity는 변경하지 않기 때문에 reader의 EntityManager가 flush 할 때 update가 다시 나가지 않음.
+        Map<User.Level, List<Long>> idsByLevel = new EnumMap<>(User.Level.class);
+        for (T item : items) {
+            idsByLevel.computeIfAbsent(item.getNextLevel(), level -> new ArrayList<>())
+                    .add(item.getId());
+        }
+
+        Date updatedDate = Date.valueOf(LocalDate.now());
+        idsByLevel.forEach((level, ids) -> jdbcTemplate.update(UPDATE_SQL, new MapSqlParameterSource()
+                .addValue("level", level.name())
+                .addValue("updatedDate", updatedDate)
+                .addValue("ids", ids)));
+    }
+}
@@ -0,0 +1,22 @@
+package spring.batch.part4;
+
+import io.micrometer.core.instrument.util.StringUtils;
+
+//userLevelUpStep 실행 방식, job parameter(mode)로 선택
+public enum UserLevelUpMode {
+    JPA, //User entity 조회 (기본값)
+    AGGREGATE, //user별 주문 합계를 SQL group by로 조회
+    ELIGIBLE, //AGGREGATE + 등급 상향 기준을 SQL having 조건으로 넣어서 대상 user만 조회
+    IN_DATABASE, //id 범위별 update 한 번으로 DB 안에서 처리 (tasklet)
+    INCREMENTAL, //이전 실행 이후 주문이 생긴 user만 조회 (이전 실행 기록이 없으면 전체)
+    DENORMALIZED, //user.total_amount 컬럼만 조회 (orders 조인 없음)
+    MERGE_JOIN, //user, orders를 각각 id 순서로 읽으면서 merge join (DB group by 없음)
+    SNAPSHOT; //user.total_amount를 primitive 배열 snapshot으로 올려서 JVM 안에서 병렬 계산 (tasklet)
+
+    public static UserLevelUpMode of(String mode) {
+        if (StringUtils.isEmpty(mode)) {
+            return JPA;
+        }
+        return valueOf(mode.toUpperCase());
+    }
+}
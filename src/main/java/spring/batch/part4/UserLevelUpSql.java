@@ -0,0 +1,45 @@
+package spring.batch.part4;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+
+//User.Level 등급 상향 기준을 SQL 조건으로 만듦
+//기준 금액은 Level enum에만 두고 SQL은 여기서 생성하므로 등급 기준이 바뀌어도 SQL을 따로 고치지 않음
+public final class UserLevelUpSql {
+
+    private UserLevelUpSql() {
+    }
+
+    //상향될 등급이 있는 등급 목록: 'NORMAL', 'SILVER', 'GOLD' (VIP 제외)
+    public static String upgradableLevels() {
+        return Arrays.stream(User.Level.values())
+                .filter(level -> level.nextLevel() != null)
+                .map(level -> "'" + level.name() + "'")
+                .collect(Collectors.joining(", "));
+    }
+
+    //현재 등급의 상향 기준 금액: case level when 'NORMAL' then 200000 ... end
+    //VIP는 when 절이 없어서 null이 되므로 비교 조건에서 항상 제외됨
+    public static String nextAmountCase(String levelColumn) {
+        StringBuilder sql = new StringBuilder("case ").append(levelColumn);
+        for (User.Level level : User.Level.values()) {
+            if (level.nextLevel() != null) {
+                sql.append(" when '").append(level.name()).append("' then ").append(level.nextAmount());
+            }
+        }
+        return sql.append(" end").toString();
+    }
+
+    //주문 합계로 계산한 상향 등급 (User.Level.getNextLevel과 같은 규칙)
+    //case when total >= 500000 then 'VIP' when total >= 300000 then 'GOLD' ... else 'NORMAL' end
+    public static String nextLevelCase(String totalAmountColumn) {
+        StringBuilder sql = new StringBuilder("case");
+        Arrays.stream(User.Level.values())
+                .filter(level -> level.nextLevel() != null)
+                .sorted(Comparator.comparingInt(User.Level::nextAmount).reversed())
+                .forEach(level -> sql.append(" when ").append(totalAmountColumn).append(" >= ").append(level.nextAmount())
+                        .append(" then '").append(level.nextLevel().name()).append("'"));
+        return sql.append(" else '").append(User.Level.getNextLevel(0).name()).append("' end").toString();
+    }
+}
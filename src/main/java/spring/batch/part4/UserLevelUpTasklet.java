@@ -0,0 +1,30 @@
+package spring.batch.part4;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.LocalDate;
+
+//id 범위마다 update 한 번으로 DB 안에서 등급을 올리는 tasklet
+public class UserLevelUpTasklet extends IdRangeUpdateTasklet {
+    //H2, MySQL 모두 update ... join 문법이 다르기 때문에 orders 합계는 상관 서브쿼리로 계산
+    private static final String UPDATE_SQL = "update user u " +
+            "set level = (select " + UserLevelUpSql.nextLevelCase("sum(o.amount)") + " from orders o where o.user_id = u.id), " +
+            "updated_date = :updatedDate " +
+            "where u.id between :minId and :maxId " +
+            "and u.level in (" + UserLevelUpSql.upgradableLevels() + ") " +
+            "and (select coalesce(sum(o.amount), 0) from orders o where o.user_id = u.id) >= " +
+            UserLevelUpSql.nextAmountCase("u.level");
+
+    public UserLevelUpTasklet(DataSource dataSource, Partitioner partitioner, int gridSize) {
+        super(dataSource, partitioner, gridSize, UPDATE_SQL);
+    }
+
+    @Override
+    protected MapSqlParameterSource parameters(long minId, long maxId) {
+        return super.parameters(minId, maxId)
+                .addValue("updatedDate", Date.valueOf(LocalDate.now()));
+    }
+}
@@ -0,0 +1,155 @@
+package spring.batch.part4;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+//user (order by id), orders (order by user_id) 두 cursor를 동시에 읽으면서 merge join 하는 reader
+//DB에서 group by(정렬 + 집계)를 하지 않고 index 순서대로 읽기만 하며, 메모리에는 현재 user와 다음 주문 한 건만 유지
+//MySQL은 두 cursor의 statement에 fetchSize Integer.MIN_VALUE를 직접 설정해서 row 단위 streaming (StreamingFetchSize)
+//minId ~ maxId를 주면 그 범위의 user, 주문만 읽음 (partition worker step)
+//재시작 시 저장된 lastId 다음부터 cursor를 다시 열기 때문에 앞의 user를 다시 merge 하지 않음
+//thread-safe 하지 않음
+public class UserOrderMergeItemReader extends AbstractItemCountingItemStreamItemReader<UserLevelUp> {
+    private static final String LAST_ID = "lastId";
+
+    private static final RowMapper<UserLevelUp> USER_ROW_MAPPER = (resultSet, i) -> UserLevelUp.builder()
+            .id(resultSet.getLong(1))
+            .level(resultSet.getString(2) == null ? null : User.Level.valueOf(resultSet.getString(2)))
+            .build();
+
+    private static final RowMapper<long[]> ORDER_ROW_MAPPER = (resultSet, i) ->
+            new long[]{resultSet.getLong(1), resultSet.getLong(2)};
+
+    private final DataSource dataSource;
+    private final long minId;
+    private final long maxId;
+    private int fetchSize = 1000;
+
+    private JdbcCursorItemReader<UserLevelUp> users;
+    private JdbcCursorItemReader<long[]> orders;
+    private long[] nextOrder; //user_id, amount
+    private Long lastId;
+
+    public UserOrderMergeItemReader(DataSource dataSource) {
+        this(dataSource, null, null);
+    }
+
+    public UserOrderMergeItemReader(DataSource dataSource, Long minId, Long maxId) {
+        setName(ClassUtils.getShortName(UserOrderMergeItemReader.class));
+        this.dataSource = dataSource;
+        this.minId = minId != null ? minId : Long.MIN_VALUE;
+        this.maxId = maxId != null ? maxId : Long.MAX_VALUE;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        if (isSaveState() && executionContext.containsKey(getExecutionContextKey(LAST_ID))) {
+            this.lastId = executionContext.getLong(getExecutionContextKey(LAST_ID));
+        }
+        super.open(executionContext);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        super.update(executionContext);
+        if (isSaveState() && lastId != null) {
+            executionContext.putLong(getExecutionContextKey(LAST_ID), lastId);
+        }
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) {
+        //cursor를 lastId 다음부터 열기 때문에 read count만 복원하면 됨
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        long from = lastId != null ? Math.max(lastId + 1, minId) : minId;
+        int cursorFetchSize = StreamingFetchSize.of(dataSource, fetchSize);
+
+        users = cursor("select id, level from user where id between ? and ? order by id",
+                from, cursorFetchSize, USER_ROW_MAPPER);
+        orders = cursor("select user_id, amount from orders where user_id between ? and ? order by user_id",
+                from, cursorFetchSize, ORDER_ROW_MAPPER);
+
+        users.open(new ExecutionContext());
+        orders.open(new ExecutionContext());
+        nextOrder = orders.read();
+    }
+
+    @Override
+    protected UserLevelUp doRead() throws Exception {
+        UserLevelUp user = users.read();
+        if (user == null) {
+            return null;
+        }
+
+        //user가 없는 주문은 건너뜀
+        while (nextOrder != null && nextOrder[0] < user.getId()) {
+            nextOrder = orders.read();
+        }
+        long totalAmount = 0;
+        long orderCount = 0;
+        while (nextOrder != null && nextOrder[0] == user.getId()) {
+            totalAmount += nextOrder[1];
+            orderCount++;
+            nextOrder = orders.read();
+        }
+
+        lastId = user.getId();
+        return UserLevelUp.builder()
+                .id(user.getId())
+                .level(user.getLevel())
+                .totalAmount(totalAmount)
+                .orderCount(orderCount)
+                .build();
+    }
+
+    @Override
+    protected void doClose() {
+        if (users != null) {
+            users.close();
+        }
+        if (orders != null) {
+            orders.close();
+        }
+        users = null;
+        orders = null;
+        nextOrder = null;
+        lastId = null;
+    }
+
+    //두 cursor는 각자 connection을 사용하므로 streaming 중인 connection에 다른 query가 실행되지 않음
+    private <T> JdbcCursorItemReader<T> cursor(String sql, long from, int cursorFetchSize, RowMapper<T> rowMapper) throws Exception {
+        JdbcCursorItemReader<T> itemReader = new JdbcCursorItemReader<T>() {
+            @Override
+            protected void applyStatementSettings(PreparedStatement stmt) throws SQLException {
+                super.applyStatementSettings(stmt);
+                //AbstractCursorItemReader는 0 이상인 fetchSize만 적용하므로 Integer.MIN_VALUE는 직접 설정
+                stmt.setFetchSize(cursorFetchSize);
+            }
+        };
+        itemReader.setName(getExecutionContextKey("cursor"));
+        itemReader.setSaveState(false);
+        //streaming result set은 getRow로 위치를 확인하지 않음 (row mapper가 cursor를 옮기지 않음)
+        itemReader.setVerifyCursorPosition(false);
+        itemReader.setDataSource(dataSource);
+        itemReader.setSql(sql);
+        itemReader.setPreparedStatementSetter(new ArgumentPreparedStatementSetter(new Object[]{from, maxId}));
+        itemReader.setRowMapper(rowMapper);
+        itemReader.afterPropertiesSet();
+        return itemReader;
+    }
+}
@@ -0,0 +1,52 @@
+package spring.batch.part4;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import spring.batch.part6.UserLevelUpPartitioner;
+
+import javax.sql.DataSource;
+
+//user.total_amount 컬럼 추가 전에 저장된 user의 주문 합계를 한 번 채우는 job
+//id 범위마다 update 한 번, 범위마다 commit (중간에 실패하면 재시작 시 다음 범위부터)
+@Configuration
+@Slf4j
+public class UserTotalAmountBackfillConfiguration {
+    private final String JOB_NAME = "userTotalAmountBackfillJob";
+    private final int GRID_SIZE = 100;
+    private final JobBuilderFactory jobBuilderFactory;
+    private final StepBuilderFactory stepBuilderFactory;
+    private final UserRepository userRepository;
+    private final DataSource dataSource;
+
+    public UserTotalAmountBackfillConfiguration(JobBuilderFactory jobBuilderFactory,
+                                                StepBuilderFactory stepBuilderFactory, UserRepository userRepository, DataSource dataSource) {
+        this.jobBuilderFactory = jobBuilderFactory;
+        this.stepBuilderFactory = stepBuilderFactory;
+        this.userRepository = userRepository;
+        this.dataSource = dataSource;
+    }
+
+    @Bean(JOB_NAME)
+    public Job userTotalAmountBackfillJob() {
+        return jobBuilderFactory.get(JOB_NAME)
+                .incrementer(new RunIdIncrementer())
+                .start(this.backfillStep())
+                .build();
+    }
+
+    @Bean(JOB_NAME + "_backfillStep")
+    public Step backfillStep() {
+        return stepBuilderFactory.get(JOB_NAME + "_backfillStep")
+                .tasklet(new IdRangeUpdateTasklet(dataSource, new UserLevelUpPartitioner(userRepository), GRID_SIZE,
+                        "update user u set total_amount = " +
+                                "(select coalesce(sum(o.amount), 0) from orders o where o.user_id = u.id) " +
+                                "where u.id between :minId and :maxId"))
+                .build();
+    }
+}
@@ -2,12 +2,20 @@ package spring.batch.part5;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import spring.batch.part4.User;
 
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
 import java.time.LocalDate;
 
 @Data
@@ -16,7 +24,13 @@ import java.time.LocalDate;
 public class Orders {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    //User와 같은 hibernate_sequences 테이블 사용 (segment만 다름)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "orders_id")
+    @GenericGenerator(name = "orders_id", strategy = "org.hibernate.id.enhanced.TableGenerator", parameters = {
+            @Parameter(name = "table_name", value = "hibernate_sequences"),
+            @Parameter(name = "segment_value", value = "orders"),
+            @Parameter(name = "increment_size", value = "1000"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
     Long id;
 
     private String itemName;
@@ -25,6 +39,13 @@ public class Orders {
 
     private LocalDate createdDate;
 
+    //연관관계 주인: insert 할 때 user_id를 같이 저장 (User.orders 단방향일 때는 insert 후 update 가 한 번 더 나감)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private User user;
+
     @Builder
     public Orders(String itemName, int amount, LocalDate createdDate) {
         this.itemName = itemName;
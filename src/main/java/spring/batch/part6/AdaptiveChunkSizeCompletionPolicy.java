@@ -0,0 +1,152 @@
+package spring.batch.part6;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.context.RepeatContextSupport;
+import org.springframework.batch.repeat.policy.CompletionPolicySupport;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//고정 chunk size 대신 chunk 처리 시간(commit 포함)과 chunk 당 메모리 할당량을 보고 다음 chunk size를 조절하는 정책
+// - 처리 시간이 targetMillis보다 길면 줄이고, 짧으면 늘림 (한 번에 최대 2배, 최소 1/2)
+// - item 당 할당 byte * chunk size가 heapBudgetBytes를 넘지 않도록 제한
+// - minChunkSize ~ maxChunkSize 범위 안에서만 조절
+//ChunkListener로도 등록해야 측정이 됨: .chunk(policy) ... .listener((ChunkListener) policy)
+//현재 chunk size는 spring.batch.chunk.size gauge로 노출
+// - gauge는 name 당 한 번만 등록하고 (Micrometer는 처음 등록한 객체만 weak reference로 보관)
+//   job 실행마다 새로 만들어지는 policy는 같은 holder에 값을 씀
+@Slf4j
+public class AdaptiveChunkSizeCompletionPolicy extends CompletionPolicySupport implements ChunkListener {
+    private static final String CHUNK_SIZE = AdaptiveChunkSizeCompletionPolicy.class.getName() + ".CHUNK_SIZE";
+    private static final Map<String, AtomicInteger> GAUGES = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private final long targetMillis;
+    private final long heapBudgetBytes;
+    private final AtomicInteger chunkSize;
+    private final AtomicInteger gauge;
+    private final ThreadLocal<Sample> samples = new ThreadLocal<>();
+
+    public AdaptiveChunkSizeCompletionPolicy(String name, int initialChunkSize, int minChunkSize, int maxChunkSize,
+                                             long targetMillis, long heapBudgetBytes) {
+        this.name = name;
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.targetMillis = targetMillis;
+        this.heapBudgetBytes = heapBudgetBytes;
+        this.chunkSize = new AtomicInteger(clamp(initialChunkSize));
+        this.gauge = GAUGES.computeIfAbsent(name, key ->
+                Metrics.gauge("spring.batch.chunk.size", Tags.of("name", key), new AtomicInteger()));
+        this.gauge.set(chunkSize.get());
+    }
+
+    public int getChunkSize() {
+        return chunkSize.get();
+    }
+
+    @Override
+    public RepeatContext start(RepeatContext parent) {
+        //chunk 도중에 size가 바뀌어도 현재 chunk는 시작할 때의 size로 끝까지 읽음
+        RepeatContext context = super.start(parent);
+        context.setAttribute(CHUNK_SIZE, chunkSize.get());
+
+        Sample sample = samples.get();
+        if (sample != null) {
+            sample.context = context;
+        }
+        return context;
+    }
+
+    @Override
+    public boolean isComplete(RepeatContext context) {
+        return ((RepeatContextSupport) context).getStartedCount() >= (Integer) context.getAttribute(CHUNK_SIZE);
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        samples.set(new Sample(System.nanoTime(), allocatedBytes()));
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        Sample sample = samples.get();
+        samples.remove();
+        if (sample == null || sample.context == null) {
+            return;
+        }
+
+        int items = ((RepeatContextSupport) sample.context).getStartedCount();
+        long elapsedMillis = (System.nanoTime() - sample.startNanos) / 1_000_000;
+        long allocated = sample.allocatedBytes < 0 ? -1 : allocatedBytes() - sample.allocatedBytes;
+        adjust(items, elapsedMillis, allocated);
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        samples.remove();
+        //rollback 된 chunk는 다시 처리해야 하므로 lock 시간이 짧아지도록 절반으로 줄임
+        gauge.set(chunkSize.updateAndGet(size -> clamp(size / 2)));
+    }
+
+    private void adjust(int items, long elapsedMillis, long allocated) {
+        if (items <= 0) {
+            return;
+        }
+
+        //item 당 처리 시간 기준으로 targetMillis 안에 처리할 수 있는 개수
+        double ratio = elapsedMillis <= 0 ? 2.0 : (double) targetMillis / elapsedMillis;
+        long next = Math.round(items * Math.max(0.5, Math.min(2.0, ratio)));
+
+        if (allocated > 0 && heapBudgetBytes > 0) {
+            long bytesPerItem = Math.max(1, allocated / items);
+            next = Math.min(next, heapBudgetBytes / bytesPerItem);
+        }
+
+        int current = chunkSize.get();
+        //한 번 측정으로 크게 흔들리지 않도록 현재 값과의 중간으로 이동
+        int adjusted = clamp((current + next) / 2);
+        if (adjusted != current) {
+            chunkSize.set(adjusted);
+            gauge.set(adjusted);
+            log.debug("{} chunk size {} -> {} ({} items, {} millis, {} bytes allocated)",
+                    name, current, adjusted, items, elapsedMillis, allocated);
+        }
+    }
+
+    private int clamp(long size) {
+        return (int) Math.max(minChunkSize, Math.min(maxChunkSize, size));
+    }
+
+    //현재 thread가 지금까지 할당한 byte (지원하지 않는 JVM이면 -1)
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (sunThreadMXBean.isThreadAllocatedMemorySupported() && sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+                return sunThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static class Sample {
+        private final long startNanos;
+        private final long allocatedBytes;
+        private RepeatContext context;
+
+        private Sample(long startNanos, long allocatedBytes) {
+            this.startNanos = startNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+}
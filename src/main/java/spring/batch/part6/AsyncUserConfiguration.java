@@ -29,6 +29,7 @@ import org.springframework.core.task.TaskExecutor;
 import spring.batch.part4.LevelUpJobExecutionListener;
 import spring.batch.part4.SaveUserTasklet;
 import spring.batch.part4.User;
+import spring.batch.part4.UserLevelUpItemWriter;
 import spring.batch.part4.UserRepository;
 import spring.batch.part5.JobParameterDecider;
 import spring.batch.part5.OrderStatistics;
@@ -170,11 +171,7 @@ public class AsyncUserConfiguration {
     //async로 변경
 
     private AsyncItemWriter<User> itemWriter() {
-        ItemWriter<User> itemWriter =  users -> { users.forEach(x-> {
-                x.levelUp();
-                userRepository.save(x);//update
-            });
-        };
+        ItemWriter<User> itemWriter = new UserLevelUpItemWriter<>(dataSource);
         AsyncItemWriter<User> asyncItemWriter = new AsyncItemWriter<>();
         asyncItemWriter.setDelegate(itemWriter);
         return asyncItemWriter;
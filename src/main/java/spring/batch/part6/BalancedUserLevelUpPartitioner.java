@@ -0,0 +1,72 @@
+package spring.batch.part6;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//UserLevelUpPartitioner는 minId ~ maxId를 같은 id 폭으로 나누기 때문에
+//삭제된 user(id gap)나 주문 수 편차가 있으면 partition 별 처리량이 크게 달라짐.
+//id 분포(분위수)를 DB에서 조회해서 partition 별 row 수(또는 주문 수 가중치)가 같아지도록 나눔.
+//경계는 window 함수(ntile, sum over)로 DB에서 계산하므로 client는 partition 수 만큼의 row만 받음 (H2, MySQL 8 이상)
+public class BalancedUserLevelUpPartitioner implements Partitioner {
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean weightByOrders;
+
+    public BalancedUserLevelUpPartitioner(DataSource dataSource) {
+        this(dataSource, false);
+    }
+
+    //weightByOrders: user 1명 + 주문 건수를 가중치로 사용
+    public BalancedUserLevelUpPartitioner(DataSource dataSource, boolean weightByOrders) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.weightByOrders = weightByOrders;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Long minId = jdbcTemplate.queryForObject("select min(id) from user", Long.class);
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from user", Long.class);
+        Map<String, ExecutionContext> result = new HashMap<>();
+        if (minId == null || maxId == null) {
+            return result;
+        }
+
+        //각 partition의 시작 id (첫 partition은 minId), row 수가 gridSize 보다 적으면 partition도 적어짐
+        List<Long> lowerBounds = weightByOrders ? orderWeightedBounds(gridSize) : rowCountBounds(gridSize);
+
+        for (int i = 0; i < lowerBounds.size(); i++) {
+            long start = lowerBounds.get(i);
+            long end = i + 1 < lowerBounds.size() ? lowerBounds.get(i + 1) - 1 : maxId;
+
+            ExecutionContext value = new ExecutionContext();
+            value.putLong("minId", start);
+            value.putLong("maxId", end);
+            result.put("partition" + i, value);
+        }
+        return result;
+    }
+
+    //id 순서로 gridSize 개 묶음(ntile)으로 나눈 뒤 묶음마다 첫 번째 id를 경계로 사용
+    //(경계마다 limit/offset 조회를 하면 offset 만큼 index를 다시 읽으므로 gridSize 배의 비용)
+    private List<Long> rowCountBounds(int gridSize) {
+        return jdbcTemplate.queryForList("select min(id) from (" +
+                        "select id, ntile(" + gridSize + ") over (order by id) tile from user" +
+                        ") x group by tile order by 1",
+                Long.class);
+    }
+
+    //user 1명 + 주문 건수를 가중치로, 앞 user들의 누적 가중치가 total * k / gridSize 이상이 되는 id를 경계로 사용
+    //tile = floor(앞 user들의 누적 가중치 * gridSize / 전체 가중치) 이므로 0 ~ gridSize - 1
+    private List<Long> orderWeightedBounds(int gridSize) {
+        return jdbcTemplate.queryForList("select min(id) from (" +
+                        "select id, floor((sum(weight) over (order by id) - weight) * " + gridSize + " / sum(weight) over ()) tile " +
+                        "from (select u.id, 1 + count(o.id) weight from user u left join orders o on o.user_id = u.id group by u.id) w" +
+                        ") x group by tile order by 1",
+                Long.class);
+    }
+}
@@ -0,0 +1,130 @@
+package spring.batch.part6;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.partition.PartitionHandler;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import spring.batch.part4.LevelUpJobExecutionListener;
+import spring.batch.part4.SaveUserTasklet;
+import spring.batch.part4.User;
+import spring.batch.part4.UserKeysetItemReader;
+import spring.batch.part4.UserLevelUpItemWriter;
+import spring.batch.part4.UserRepository;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+//PartitionUserConfiguration의 고정 partition(thread 하나당 범위 하나) 대신
+//작은 범위 여러 개를 공유 queue에 넣고 worker가 끝나는 대로 다음 범위를 가져가는 방식
+@Configuration
+@Slf4j
+public class DynamicPartitionUserConfiguration {
+    private final String JOB_NAME = "dynamicPartitionUserJob";
+    private final int CHUNK = 1000;
+    private final int WORKERS = 8;
+    private final int RANGES_PER_WORKER = 8;
+    private final JobBuilderFactory jobBuilderFactory;
+    private final StepBuilderFactory stepBuilderFactory;
+    private final UserRepository userRepository;
+    private final EntityManagerFactory entityManagerFactory;
+    private final DataSource dataSource;
+    private final TaskExecutor taskExecutor;
+    private final JobExplorer jobExplorer;
+
+    public DynamicPartitionUserConfiguration(JobBuilderFactory jobBuilderFactory,
+                                             StepBuilderFactory stepBuilderFactory, UserRepository userRepository, EntityManagerFactory entityManagerFactory, DataSource dataSource, TaskExecutor taskExecutor, JobExplorer jobExplorer) {
+        this.jobBuilderFactory = jobBuilderFactory;
+        this.stepBuilderFactory = stepBuilderFactory;
+        this.userRepository = userRepository;
+        this.entityManagerFactory = entityManagerFactory;
+        this.dataSource = dataSource;
+        this.taskExecutor = taskExecutor;
+        this.jobExplorer = jobExplorer;
+    }
+
+    @Bean(JOB_NAME)
+    public Job userJob() throws Exception {
+        return jobBuilderFactory.get(JOB_NAME)
+                .incrementer(new RunIdIncrementer())
+                .start(this.saveUserStep())
+                .next(this.userLevelUpManagerStep())
+                .listener(new LevelUpJobExecutionListener(userRepository))
+                .build();
+    }
+
+    @Bean(JOB_NAME+"_saveUserStep")
+    public Step saveUserStep() {
+        return stepBuilderFactory.get(JOB_NAME+"_saveUserStep")
+                .tasklet(new SaveUserTasklet(userRepository))
+                .build();
+    }
+
+    @Bean(JOB_NAME+"_userLevelUpStep")
+    public Step userLevelUpStep() throws Exception {
+        return stepBuilderFactory.get(JOB_NAME+"_userLevelUpStep")
+                .<User, User>chunk(CHUNK)
+                .reader(itemReader(null, null))
+                .processor(itemProcessor())
+                .writer(itemWriter())
+                .build();
+    }
+
+    @Bean(JOB_NAME + "_userLevelUpStep.manager")
+    public Step userLevelUpManagerStep() throws Exception {
+        //이전 실행의 partition 별 처리 시간으로 partition 수, 범위, 실행 순서를 정함. 이력이 없으면 guided 범위 사용
+        HistoryAwareUserLevelUpPartitioner partitioner = new HistoryAwareUserLevelUpPartitioner(jobExplorer, dataSource,
+                new DynamicUserLevelUpPartitioner(dataSource, RANGES_PER_WORKER), JOB_NAME, JOB_NAME + "_userLevelUpStep");
+
+        return this.stepBuilderFactory.get(JOB_NAME + "_userLevelUpStep.manager")
+                .partitioner(JOB_NAME + "_userLevelUpStep", partitioner)
+                .step(userLevelUpStep())
+                .partitionHandler(workQueuePartitionHandler())
+                .listener(partitioner) //현재 job instance 확인용
+                .build();
+    }
+
+    @Bean(JOB_NAME + "_workQueuePartitionHandler")
+    PartitionHandler workQueuePartitionHandler() throws Exception {
+        WorkQueuePartitionHandler handler = new WorkQueuePartitionHandler();
+        handler.setStep(userLevelUpStep());
+        handler.setTaskExecutor(this.taskExecutor);
+        //gridSize는 worker 수 (partition 수의 최솟값), 실제 partition 수는 partitioner가 정함
+        handler.setGridSize(WORKERS);
+        handler.setWorkers(WORKERS);
+
+        return handler;
+    }
+
+    private ItemWriter<User> itemWriter() {
+        return new UserLevelUpItemWriter<>(dataSource);
+    }
+
+    private ItemProcessor<User, User> itemProcessor() {
+        return user -> {
+            if(user.availableLevelUp()){
+                return user;
+            }
+            return null;
+        };
+    }
+
+    @Bean(JOB_NAME+ "_userKeysetItemReader")
+    @StepScope
+    UserKeysetItemReader itemReader(@Value("#{stepExecutionContext[minId]}") Long minId
+            , @Value("#{stepExecutionContext[maxId]}") Long maxId) throws Exception {
+        UserKeysetItemReader itemReader = new UserKeysetItemReader(entityManagerFactory, CHUNK, minId, maxId);
+        itemReader.setName(JOB_NAME+ "_userKeysetItemReader");
+        return itemReader;
+    }
+}
@@ -0,0 +1,71 @@
+package spring.batch.part6;
+
+import org.springframework.batch.core.partition.PartitionNameProvider;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//WorkQueuePartitionHandler와 함께 사용하는 partitioner
+//gridSize(worker 수) * rangesPerWorker 개의 작은 범위로 나누고, 뒤로 갈수록 범위를 작게 만듦 (guided scheduling)
+//앞쪽의 큰 범위가 먼저 처리되고, 마지막에는 작은 범위만 남기 때문에 느린 worker 하나 때문에 전체가 기다리는 시간이 줄어듦.
+//partition 이름은 gridSize로만 결정되기 때문에 재시작 시 PartitionNameProvider로 같은 partition을 찾아서 이어서 실행.
+public class DynamicUserLevelUpPartitioner implements Partitioner, PartitionNameProvider {
+    private final JdbcTemplate jdbcTemplate;
+    private final int rangesPerWorker;
+
+    public DynamicUserLevelUpPartitioner(DataSource dataSource, int rangesPerWorker) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.rangesPerWorker = rangesPerWorker;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Long minId = jdbcTemplate.queryForObject("select min(id) from user", Long.class);
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from user", Long.class);
+        Map<String, ExecutionContext> result = new HashMap<>();
+        if (minId == null || maxId == null) {
+            return result;
+        }
+
+        //i번째 범위의 가중치는 (rangeCount - i): 첫 범위가 가장 크고 마지막 범위가 가장 작음
+        int rangeCount = rangeCount(gridSize);
+        long total = maxId - minId + 1;
+        long weightSum = (long) rangeCount * (rangeCount + 1) / 2;
+        long accumulated = 0;
+        long start = minId;
+
+        for (int i = 0; i < rangeCount; i++) {
+            accumulated += rangeCount - i;
+            long end = i == rangeCount - 1 ? maxId : minId + total * accumulated / weightSum - 1;
+
+            //id 범위가 partition 수보다 작으면 빈 범위(start > end)가 생기지만, 이름을 유지하기 위해 그대로 둠
+            ExecutionContext value = new ExecutionContext();
+            value.putLong("minId", start);
+            value.putLong("maxId", end);
+            result.put("partition" + i, value);
+
+            start = Math.max(start, end + 1);
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<String> getPartitionNames(int gridSize) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < rangeCount(gridSize); i++) {
+            names.add("partition" + i);
+        }
+        return names;
+    }
+
+    private int rangeCount(int gridSize) {
+        return gridSize * rangesPerWorker;
+    }
+}
@@ -0,0 +1,122 @@
+package spring.batch.part6;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.step.skip.SkipPolicy;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//reader 한 번으로 읽은 chunk를 등록된 consumer 여러 개에 나누어 주는 writer (같은 테이블을 consumer 수만큼 다시 읽지 않음)
+// - consumer마다 processor(변환, null이면 제외), writer, skip policy를 따로 가짐
+// - consumer의 processor, writer에서 예외가 나면 그 consumer의 skip policy로 판단
+//   skip이면 그 consumer의 이번 chunk만 건너뛰고 나머지 consumer는 계속, 아니면 예외를 던져서 chunk 전체 rollback
+// - skip된 consumer의 쓰기는 chunk transaction에서 따로 되돌리지 않으므로,
+//   DB에 쓰는 consumer는 skip 하지 않도록(NeverSkipItemSkipPolicy) 등록
+//consumer의 processor, writer가 ItemStream이면 open, update, close를 같이 호출
+@Slf4j
+public class FanOutItemWriter<T> extends ItemStreamSupport implements ItemStreamWriter<T> {
+    private static final String SKIP_COUNT = "skipCount";
+
+    private final List<Consumer<T, ?>> consumers = new ArrayList<>();
+
+    public FanOutItemWriter() {
+        setName(ClassUtils.getShortName(FanOutItemWriter.class));
+    }
+
+    public <O> FanOutItemWriter<T> consumer(String name, ItemProcessor<? super T, ? extends O> processor,
+                                            ItemWriter<? super O> writer, SkipPolicy skipPolicy) {
+        consumers.add(new Consumer<>(name, processor, writer, skipPolicy));
+        return this;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        for (Consumer<T, ?> consumer : consumers) {
+            consumer.skipCount = executionContext.getInt(getExecutionContextKey(consumer.name + "." + SKIP_COUNT), 0);
+            for (ItemStream stream : consumer.streams()) {
+                stream.open(executionContext);
+            }
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        for (Consumer<T, ?> consumer : consumers) {
+            executionContext.putInt(getExecutionContextKey(consumer.name + "." + SKIP_COUNT), consumer.skipCount);
+            for (ItemStream stream : consumer.streams()) {
+                stream.update(executionContext);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Consumer<T, ?> consumer : consumers) {
+            for (ItemStream stream : consumer.streams()) {
+                stream.close();
+            }
+        }
+    }
+
+    @Override
+    public void write(List<? extends T> items) throws Exception {
+        for (Consumer<T, ?> consumer : consumers) {
+            try {
+                consumer.write(items);
+            } catch (Exception e) {
+                if (!consumer.skipPolicy.shouldSkip(e, consumer.skipCount)) {
+                    throw e;
+                }
+                consumer.skipCount++;
+                log.warn("consumer {} chunk {} 건 skip ({} 번째)", consumer.name, items.size(), consumer.skipCount, e);
+            }
+        }
+    }
+
+    private static class Consumer<T, O> {
+        private final String name;
+        private final ItemProcessor<? super T, ? extends O> processor;
+        private final ItemWriter<? super O> writer;
+        private final SkipPolicy skipPolicy;
+        private int skipCount = 0;
+
+        private Consumer(String name, ItemProcessor<? super T, ? extends O> processor,
+                         ItemWriter<? super O> writer, SkipPolicy skipPolicy) {
+            this.name = name;
+            this.processor = processor;
+            this.writer = writer;
+            this.skipPolicy = skipPolicy;
+        }
+
+        private void write(List<? extends T> items) throws Exception {
+            List<O> outputs = new ArrayList<>(items.size());
+            for (T item : items) {
+                O output = processor.process(item);
+                if (output != null) {
+                    outputs.add(output);
+                }
+            }
+            if (!outputs.isEmpty()) {
+                writer.write(outputs);
+            }
+        }
+
+        private List<ItemStream> streams() {
+            List<ItemStream> streams = new ArrayList<>();
+            if (processor instanceof ItemStream) {
+                streams.add((ItemStream) processor);
+            }
+            if (writer instanceof ItemStream) {
+                streams.add((ItemStream) writer);
+            }
+            return streams;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package spring.batch.part6;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.JobScope;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.step.skip.AlwaysSkipItemSkipPolicy;
+import org.springframework.batch.core.step.skip.NeverSkipItemSkipPolicy;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.FileSystemResource;
+import spring.batch.part4.LevelUpJobExecutionListener;
+import spring.batch.part4.SaveUserTasklet;
+import spring.batch.part4.UserLevelUp;
+import spring.batch.part4.UserLevelUpItemWriter;
+import spring.batch.part4.UserOrderMergeItemReader;
+import spring.batch.part4.UserRepository;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+
+//user, orders를 한 번만 읽어서(merge join) 여러 consumer에 나누어 주는 job
+// - levelUp: 등급 상향 (DB update, 실패하면 chunk rollback)
+// - levelCount: 등급별 user 수 집계
+// - upgradedUsers: 등급이 오르는 user 파일 출력
+//집계, 파일 출력이 실패해도 등급 상향은 계속 진행 (skip)
+@Configuration
+@Slf4j
+public class FanOutUserConfiguration {
+    private final String JOB_NAME = "fanOutUserJob";
+    private final int CHUNK = 1000;
+    private final JobBuilderFactory jobBuilderFactory;
+    private final StepBuilderFactory stepBuilderFactory;
+    private final UserRepository userRepository;
+    private final DataSource dataSource;
+
+    public FanOutUserConfiguration(JobBuilderFactory jobBuilderFactory,
+                                   StepBuilderFactory stepBuilderFactory, UserRepository userRepository, DataSource dataSource) {
+        this.jobBuilderFactory = jobBuilderFactory;
+        this.stepBuilderFactory = stepBuilderFactory;
+        this.userRepository = userRepository;
+        this.dataSource = dataSource;
+    }
+
+    @Bean(JOB_NAME)
+    public Job fanOutUserJob() throws Exception {
+        return jobBuilderFactory.get(JOB_NAME)
+                .incrementer(new RunIdIncrementer())
+                .start(this.saveUserStep())
+                .next(this.fanOutStep(null))
+                .listener(new LevelUpJobExecutionListener(userRepository))
+                .build();
+    }
+
+    @Bean(JOB_NAME+"_saveUserStep")
+    public Step saveUserStep() {
+        return stepBuilderFactory.get(JOB_NAME+"_saveUserStep")
+                .tasklet(new SaveUserTasklet(userRepository))
+                .build();
+    }
+
+    @Bean(JOB_NAME+"_fanOutStep")
+    @JobScope // path parameter 필요
+    public Step fanOutStep(@Value("#{jobParameters[path]}") String path) throws Exception {
+        //등급 상향 대상만 넘기는 processor (levelUp, upgradedUsers 공통)
+        ItemProcessor<UserLevelUp, UserLevelUp> upgradable = user -> user.availableLevelUp() ? user : null;
+
+        FanOutItemWriter<UserLevelUp> itemWriter = new FanOutItemWriter<UserLevelUp>()
+                .consumer("levelUp", upgradable, new UserLevelUpItemWriter<>(dataSource), new NeverSkipItemSkipPolicy())
+                .consumer("levelCount", user -> user, new LevelCountItemWriter(), new AlwaysSkipItemSkipPolicy())
+                .consumer("upgradedUsers", upgradable, upgradedUserItemWriter(path), new AlwaysSkipItemSkipPolicy());
+        itemWriter.setName(JOB_NAME+"_fanOutItemWriter");
+
+        return stepBuilderFactory.get(JOB_NAME+"_fanOutStep")
+                .<UserLevelUp, UserLevelUp>chunk(CHUNK)
+                .reader(itemReader())
+                .writer(itemWriter)
+                .build();
+    }
+
+    private FlatFileItemWriter<UserLevelUp> upgradedUserItemWriter(String path) throws Exception {
+        String fileName = LocalDate.now() + "_등급_상향_user.csv";
+        FlatFileItemWriter<UserLevelUp> itemWriter = new FlatFileItemWriterBuilder<UserLevelUp>()
+                .resource(new FileSystemResource((path == null ? "output/" : path) + fileName))
+                .name(JOB_NAME+"_upgradedUserItemWriter")
+                .encoding("UTF-8")
+                .delimited()
+                .names(new String[] {"id", "level", "nextLevel", "totalAmount"})
+                .headerCallback(writer -> writer.write("id,level,next_level,total_amount"))
+                .build();
+        itemWriter.afterPropertiesSet();
+        return itemWriter;
+    }
+
+    private UserOrderMergeItemReader itemReader() {
+        UserOrderMergeItemReader itemReader = new UserOrderMergeItemReader(dataSource);
+        itemReader.setName(JOB_NAME+ "_userOrderMergeItemReader");
+        itemReader.setFetchSize(CHUNK);
+        return itemReader;
+    }
+}
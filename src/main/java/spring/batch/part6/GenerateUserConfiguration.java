@@ -0,0 +1,102 @@
+package spring.batch.part6;
+
+import io.micrometer.core.instrument.util.StringUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.JobScope;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.partition.PartitionHandler;
+import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import spring.batch.part4.AmountDistribution;
+import spring.batch.part4.SyntheticUser;
+import spring.batch.part4.SyntheticUserItemReader;
+import spring.batch.part4.SyntheticUserItemWriter;
+
+import javax.sql.DataSource;
+
+//SaveUserTasklet(4만 건을 한 번에 만들어서 saveAll) 대신 대량 테스트 데이터를 chunk 단위로 생성해서 batch insert 하는 job
+//job parameter
+// - count: 생성할 user 수 (기본 40000)
+// - seed: 같은 seed면 같은 데이터 생성 (기본 0)
+// - ordersPerUser: user 당 주문 수 (기본 1)
+// - amounts: 주문 금액 분포 "금액:가중치,..." (기본 AmountDistribution.DEFAULT)
+@Configuration
+@Slf4j
+public class GenerateUserConfiguration {
+    private final String JOB_NAME = "generateUserJob";
+    private final int CHUNK = 1000;
+    private final int GRID_SIZE = 8;
+    private final JobBuilderFactory jobBuilderFactory;
+    private final StepBuilderFactory stepBuilderFactory;
+    private final DataSource dataSource;
+    private final TaskExecutor taskExecutor;
+
+    public GenerateUserConfiguration(JobBuilderFactory jobBuilderFactory,
+                                     StepBuilderFactory stepBuilderFactory, DataSource dataSource, TaskExecutor taskExecutor) {
+        this.jobBuilderFactory = jobBuilderFactory;
+        this.stepBuilderFactory = stepBuilderFactory;
+        this.dataSource = dataSource;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @Bean(JOB_NAME)
+    public Job generateUserJob() throws Exception {
+        return jobBuilderFactory.get(JOB_NAME)
+                .incrementer(new RunIdIncrementer())
+                .start(this.generateUserManagerStep(null))
+                .build();
+    }
+
+    @Bean(JOB_NAME + "_generateUserStep")
+    public Step generateUserStep() throws Exception {
+        return stepBuilderFactory.get(JOB_NAME + "_generateUserStep")
+                .<SyntheticUser, SyntheticUser>chunk(CHUNK)
+                .reader(itemReader(null, null, null, null, null))
+                .writer(new SyntheticUserItemWriter(dataSource))
+                .build();
+    }
+
+    @Bean(JOB_NAME + "_generateUserStep.manager")
+    @JobScope // count parameter 필요
+    public Step generateUserManagerStep(@Value("#{jobParameters[count]}") String count) throws Exception {
+        long userCount = StringUtils.isNotEmpty(count) ? Long.parseLong(count) : 40_000;
+        return this.stepBuilderFactory.get(JOB_NAME + "_generateUserStep.manager")
+                .partitioner(JOB_NAME + "_generateUserStep", new SyntheticUserPartitioner(userCount))
+                .step(generateUserStep())
+                .partitionHandler(generateUserPartitionHandler())
+                .build();
+    }
+
+    @Bean(JOB_NAME + "_partitionHandler")
+    PartitionHandler generateUserPartitionHandler() throws Exception {
+        TaskExecutorPartitionHandler handler = new TaskExecutorPartitionHandler();
+        handler.setStep(generateUserStep());
+        handler.setTaskExecutor(this.taskExecutor);
+        handler.setGridSize(GRID_SIZE);
+
+        return handler;
+    }
+
+    @Bean(JOB_NAME + "_syntheticUserItemReader")
+    @StepScope
+    SyntheticUserItemReader itemReader(@Value("#{stepExecutionContext[fromIndex]}") Long fromIndex,
+                                       @Value("#{stepExecutionContext[toIndex]}") Long toIndex,
+                                       @Value("#{jobParameters[seed]}") String seed,
+                                       @Value("#{jobParameters[ordersPerUser]}") String ordersPerUser,
+                                       @Value("#{jobParameters[amounts]}") String amounts) {
+        SyntheticUserItemReader itemReader = new SyntheticUserItemReader(fromIndex, toIndex,
+                StringUtils.isNotEmpty(seed) ? Long.parseLong(seed) : 0,
+                StringUtils.isNotEmpty(ordersPerUser) ? Integer.parseInt(ordersPerUser) : 1,
+                AmountDistribution.of(amounts));
+        itemReader.setName(JOB_NAME + "_syntheticUserItemReader");
+        return itemReader;
+    }
+}
@@ -0,0 +1,269 @@
+package spring.batch.part6;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//이전 실행의 partition StepExecution(처리 시간, 읽은 건수)을 job repository에서 읽어서 다음 실행의 partition 계획을 세움
+// - partition 수: 예상 처리 시간 / targetPartitionMillis (최소 gridSize, 최대 maxPartitions)
+// - 범위 경계: id 구간별 처리 비용(ms / id)이 같아지도록 자름
+// - 실행 순서: 예상 처리 시간(estimatedMillis)을 context에 넣어서 WorkQueuePartitionHandler가 오래 걸리는 것부터 실행
+//이력이 없으면 fallback partitioner를 사용하고, 재시작이면 같은 job instance에서 만들었던 partition을 그대로 사용.
+//manager step의 listener로 등록해야 현재 job instance를 알 수 있음.
+@Slf4j
+public class HistoryAwareUserLevelUpPartitioner implements Partitioner, StepExecutionListener {
+    public static final String ESTIMATED_MILLIS = "estimatedMillis";
+
+    private final JobExplorer jobExplorer;
+    private final JdbcTemplate jdbcTemplate;
+    private final Partitioner fallback;
+    private final String jobName;
+    private final String partitionStepName;
+
+    private long targetPartitionMillis = 60_000;
+    private int maxPartitions = 256;
+    private int historySize = 10;
+
+    private StepExecution managerStepExecution;
+
+    public HistoryAwareUserLevelUpPartitioner(JobExplorer jobExplorer, DataSource dataSource, Partitioner fallback,
+                                              String jobName, String partitionStepName) {
+        this.jobExplorer = jobExplorer;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.fallback = fallback;
+        this.jobName = jobName;
+        this.partitionStepName = partitionStepName;
+    }
+
+    public void setTargetPartitionMillis(long targetPartitionMillis) {
+        this.targetPartitionMillis = targetPartitionMillis;
+    }
+
+    public void setMaxPartitions(int maxPartitions) {
+        this.maxPartitions = maxPartitions;
+    }
+
+    public void setHistorySize(int historySize) {
+        this.historySize = historySize;
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        this.managerStepExecution = stepExecution;
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        this.managerStepExecution = null;
+        return null;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Map<String, ExecutionContext> previousPlan = previousPlanOfCurrentInstance();
+        if (!previousPlan.isEmpty()) {
+            //재시작: partition 이름과 범위가 바뀌면 완료되지 않은 범위를 놓칠 수 있으므로 이전 계획 그대로 사용
+            return previousPlan;
+        }
+
+        List<Segment> history = lastCompletedHistory();
+        if (history.isEmpty()) {
+            return fallback.partition(gridSize);
+        }
+
+        Long minId = jdbcTemplate.queryForObject("select min(id) from user", Long.class);
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from user", Long.class);
+        if (minId == null || maxId == null) {
+            return new HashMap<>();
+        }
+        return plan(history, minId, maxId, gridSize);
+    }
+
+    private Map<String, ExecutionContext> plan(List<Segment> history, long minId, long maxId, int gridSize) {
+        List<Segment> pieces = pieces(history, minId, maxId);
+        double total = pieces.stream().mapToDouble(Segment::cost).sum();
+        int count = (int) Math.min(maxPartitions, Math.max(gridSize, Math.ceil(total / targetPartitionMillis)));
+        double perPartition = total / count;
+
+        Map<String, ExecutionContext> result = new HashMap<>();
+        int index = 0;
+        long start = minId;
+        double accumulated = 0;
+        for (Segment piece : pieces) {
+            long from = piece.minId;
+            while (index < count - 1 && from <= piece.maxId) {
+                double remaining = perPartition - accumulated;
+                long width = piece.maxId - from + 1;
+                if (width * piece.density < remaining) {
+                    break;
+                }
+                long cutWidth = Math.min(width, Math.max(1, (long) Math.ceil(remaining / piece.density)));
+                long end = from + cutWidth - 1;
+                result.put("partition" + index, context(start, end, perPartition));
+                index++;
+                start = end + 1;
+                from = end + 1;
+                accumulated = 0;
+            }
+            if (from <= piece.maxId) {
+                accumulated += (piece.maxId - from + 1) * piece.density;
+            }
+        }
+        if (start <= maxId) {
+            result.put("partition" + index, context(start, maxId, accumulated));
+        }
+
+        log.info("이전 실행 이력 기반 partition 계획: 예상 처리 시간 {} millis, partition {} 개", Math.round(total), result.size());
+        return result;
+    }
+
+    //[minId, maxId]를 이력 구간과 이력이 없는 구간(평균 비용 사용)으로 나눔
+    private List<Segment> pieces(List<Segment> history, long minId, long maxId) {
+        double totalMillis = history.stream().mapToDouble(Segment::cost).sum();
+        long totalWidth = history.stream().mapToLong(Segment::width).sum();
+        double averageDensity = totalMillis / totalWidth;
+
+        List<Segment> pieces = new ArrayList<>();
+        long cursor = minId;
+        for (Segment segment : history) {
+            if (segment.maxId < cursor) {
+                continue;
+            }
+            if (segment.minId > maxId) {
+                break;
+            }
+            if (segment.minId > cursor) {
+                pieces.add(new Segment(cursor, segment.minId - 1, averageDensity));
+            }
+            long from = Math.max(segment.minId, cursor);
+            long to = Math.min(segment.maxId, maxId);
+            pieces.add(new Segment(from, to, segment.density));
+            cursor = to + 1;
+        }
+        if (cursor <= maxId) {
+            pieces.add(new Segment(cursor, maxId, averageDensity));
+        }
+        return pieces;
+    }
+
+    //현재 job instance의 이전 실행(재시작 전)에서 만들어진 partition 들
+    private Map<String, ExecutionContext> previousPlanOfCurrentInstance() {
+        Map<String, ExecutionContext> result = new HashMap<>();
+        if (managerStepExecution == null) {
+            return result;
+        }
+        JobExecution current = managerStepExecution.getJobExecution();
+        List<JobExecution> executions = new ArrayList<>(jobExplorer.getJobExecutions(current.getJobInstance()));
+        executions.sort(Comparator.comparing(JobExecution::getId));
+
+        //완료된 partition은 이전 실행에만 있으므로 모든 이전 실행을 합침 (같은 이름은 최신 것으로)
+        for (JobExecution execution : executions) {
+            if (execution.getId().equals(current.getId())) {
+                continue;
+            }
+            for (StepExecution stepExecution : execution.getStepExecutions()) {
+                String name = partitionName(stepExecution);
+                if (name != null) {
+                    result.put(name, new ExecutionContext(stepExecution.getExecutionContext()));
+                }
+            }
+        }
+        return result;
+    }
+
+    //가장 최근 job instance 중 완료된 partition 이력이 있는 것
+    private List<Segment> lastCompletedHistory() {
+        JobInstance currentInstance = managerStepExecution == null ? null
+                : managerStepExecution.getJobExecution().getJobInstance();
+
+        for (JobInstance jobInstance : jobExplorer.getJobInstances(jobName, 0, historySize)) {
+            if (currentInstance != null && jobInstance.getId().equals(currentInstance.getId())) {
+                continue;
+            }
+            List<Segment> segments = new ArrayList<>();
+            for (JobExecution execution : jobExplorer.getJobExecutions(jobInstance)) {
+                for (StepExecution stepExecution : execution.getStepExecutions()) {
+                    Segment segment = segment(stepExecution);
+                    if (segment != null) {
+                        segments.add(segment);
+                    }
+                }
+            }
+            if (!segments.isEmpty()) {
+                segments.sort(Comparator.comparingLong(segment -> segment.minId));
+                return segments;
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    private Segment segment(StepExecution stepExecution) {
+        ExecutionContext context = stepExecution.getExecutionContext();
+        if (partitionName(stepExecution) == null
+                || stepExecution.getStatus() != BatchStatus.COMPLETED
+                || stepExecution.getStartTime() == null || stepExecution.getEndTime() == null
+                || !context.containsKey("minId") || !context.containsKey("maxId")) {
+            return null;
+        }
+        long minId = context.getLong("minId");
+        long maxId = context.getLong("maxId");
+        if (minId > maxId) {
+            return null;
+        }
+        long millis = stepExecution.getEndTime().getTime() - stepExecution.getStartTime().getTime();
+        //0ms로 기록된 작은 범위도 비용이 0이 되지 않도록 최소 1ms
+        return new Segment(minId, maxId, (double) Math.max(1, millis) / (maxId - minId + 1));
+    }
+
+    private String partitionName(StepExecution stepExecution) {
+        String prefix = partitionStepName + ":";
+        if (!stepExecution.getStepName().startsWith(prefix)) {
+            return null;
+        }
+        return stepExecution.getStepName().substring(prefix.length());
+    }
+
+    private ExecutionContext context(long minId, long maxId, double estimatedMillis) {
+        ExecutionContext value = new ExecutionContext();
+        value.putLong("minId", minId);
+        value.putLong("maxId", maxId);
+        value.putLong(ESTIMATED_MILLIS, Math.round(estimatedMillis));
+        return value;
+    }
+
+    //id 구간과 id 하나당 처리 비용(ms)
+    private static class Segment {
+        private final long minId;
+        private final long maxId;
+        private final double density;
+
+        private Segment(long minId, long maxId, double density) {
+            this.minId = minId;
+            this.maxId = maxId;
+            this.density = density;
+        }
+
+        private long width() {
+            return maxId - minId + 1;
+        }
+
+        private double cost() {
+            return width() * density;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package spring.batch.part6;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.util.ClassUtils;
+import spring.batch.part4.User;
+import spring.batch.part4.UserLevelUp;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+//등급 상향을 반영한 등급별 user 수를 세는 writer (FanOutItemWriter의 consumer 용)
+//집계 값은 step ExecutionContext에 저장하므로 재시작해도 commit 된 chunk까지의 값에서 이어서 셈, close 시 로그
+@Slf4j
+public class LevelCountItemWriter extends ItemStreamSupport implements ItemStreamWriter<UserLevelUp> {
+    private final Map<User.Level, Long> counts = new EnumMap<>(User.Level.class);
+
+    public LevelCountItemWriter() {
+        setName(ClassUtils.getShortName(LevelCountItemWriter.class));
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        counts.clear();
+        for (User.Level level : User.Level.values()) {
+            counts.put(level, executionContext.getLong(getExecutionContextKey(level.name()), 0L));
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        counts.forEach((level, count) -> executionContext.putLong(getExecutionContextKey(level.name()), count));
+    }
+
+    @Override
+    public void close() {
+        log.info("등급별 user 수: {}", counts);
+    }
+
+    @Override
+    public void write(List<? extends UserLevelUp> items) {
+        for (UserLevelUp item : items) {
+            User.Level level = item.availableLevelUp() ? item.getNextLevel() : item.getLevel();
+            //등급이 없는 user는 제외
+            if (level != null) {
+                counts.merge(level, 1L, Long::sum);
+            }
+        }
+    }
+}
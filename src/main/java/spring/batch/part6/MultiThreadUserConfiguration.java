@@ -11,10 +11,8 @@ import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.JdbcPagingItemReader;
-import org.springframework.batch.item.database.JpaPagingItemReader;
 import org.springframework.batch.item.database.Order;
 import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
-import org.springframework.batch.item.database.builder.JpaPagingItemReaderBuilder;
 import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
 import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
@@ -26,7 +24,8 @@ import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.task.TaskExecutor;
 import spring.batch.part4.LevelUpJobExecutionListener;
 import spring.batch.part4.SaveUserTasklet;
-import spring.batch.part4.User;
+import spring.batch.part4.UserLevelUp;
+import spring.batch.part4.UserLevelUpItemWriter;
 import spring.batch.part4.UserRepository;
 import spring.batch.part5.JobParameterDecider;
 import spring.batch.part5.OrderStatistics;
@@ -154,9 +153,11 @@ public class MultiThreadUserConfiguration {
 
     @Bean(JOB_NAME+"_userLevelUpStep")
     public Step userLevelUpStep() throws Exception {
+        UserIdBlockItemReader itemReader = itemReader();
         return stepBuilderFactory.get(JOB_NAME+"_userLevelUpStep")
-                .<User, User>chunk(CHUNK)
-                .reader(itemReader())
+                //chunk 하나 = reader의 id block 하나 (CHUNK개 id 범위)
+                .<UserLevelUp, UserLevelUp>chunk(itemReader.completionPolicy())
+                .reader(itemReader)
                 .processor(itemProcessor())
                 .writer(itemWriter())
                 .taskExecutor(this.taskExecutor)
@@ -166,15 +167,11 @@ public class MultiThreadUserConfiguration {
 
     }
 
-    private ItemWriter<? super User> itemWriter() {
-        return users -> { users.forEach(x-> {
-                x.levelUp();
-                userRepository.save(x);//update
-            });
-        };
+    private ItemWriter<? super UserLevelUp> itemWriter() {
+        return new UserLevelUpItemWriter<>(dataSource);
     }
 
-    private ItemProcessor<? super User,? extends User> itemProcessor() {
+    private ItemProcessor<? super UserLevelUp,? extends UserLevelUp> itemProcessor() {
         return user -> {
             if(user.availableLevelUp()){
                 return user;
@@ -183,15 +180,11 @@ public class MultiThreadUserConfiguration {
         };
     }
 
-    private ItemReader<? extends User> itemReader() throws Exception {
-        //JpaPagingItemReader
-        JpaPagingItemReader itemReader = new JpaPagingItemReaderBuilder<User>()
-                .name(JOB_NAME+ "_jpaPagingItemReader")
-                .entityManagerFactory(entityManagerFactory)
-                .queryString("select u from User u")
-                .pageSize(CHUNK) //보통 chunk size와 동일하게 설정함.
-                .build();
-        itemReader.afterPropertiesSet();
+    private UserIdBlockItemReader itemReader() {
+        //JpaPagingItemReader는 thread 간에 synchronized로 page를 나누고 재시작 위치를 저장할 수 없음
+        //id block을 thread마다 나누어 가져가는 reader로 변경 (user.total_amount 사용)
+        UserIdBlockItemReader itemReader = new UserIdBlockItemReader(dataSource, CHUNK);
+        itemReader.setName(JOB_NAME+ "_userIdBlockItemReader");
         return itemReader;
     }
 
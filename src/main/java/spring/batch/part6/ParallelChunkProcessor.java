@@ -0,0 +1,117 @@
+package spring.batch.part6;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.metrics.BatchMetrics;
+import org.springframework.batch.core.step.item.Chunk;
+import org.springframework.batch.core.step.item.SimpleChunkProcessor;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+//chunk 하나를 batchSize개씩 나누어서 ForkJoinPool에서 process 하는 ChunkProcessor
+// - AsyncItemProcessor와 달리 item마다 Future, executor task를 만들지 않음 (chunk당 결과 배열 하나 + sub-batch task)
+// - 결과는 입력 순서대로 writer에 전달, null을 반환한 item은 filter 처리 (SimpleChunkProcessor와 같음)
+// - 병렬 정도는 pool로 제한 (기본값 commonPool, step에서는 전용 pool을 지정해서 다른 fork/join 작업과 분리)
+// - item 마다 spring.batch.item.process timer 기록 (SimpleChunkProcessor와 같은 metric, timer는 chunk 당 한 번만 조회)
+//processor, ItemProcessListener는 pool thread에서 호출되므로 thread-safe 해야 함
+//SimpleStepBuilder로는 ChunkProcessor를 바꿀 수 없으므로 ChunkOrientedTasklet으로 직접 step 생성
+public class ParallelChunkProcessor<I, O> extends SimpleChunkProcessor<I, O> {
+    private final int batchSize;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    public ParallelChunkProcessor(ItemProcessor<? super I, ? extends O> itemProcessor,
+                                  ItemWriter<? super O> itemWriter, int batchSize) {
+        super(itemProcessor, itemWriter);
+        this.batchSize = batchSize;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    protected Chunk<O> transform(StepContribution contribution, Chunk<I> inputs) throws Exception {
+        List<I> items = inputs.getItems();
+        Object[] results = new Object[items.size()];
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        Timer[] timers = {
+                processTimer(contribution.getStepExecution(), BatchMetrics.STATUS_SUCCESS),
+                processTimer(contribution.getStepExecution(), BatchMetrics.STATUS_FAILURE)};
+        pool.invoke(new ProcessAction(items, results, failure, timers, 0, items.size()));
+
+        if (failure.get() != null) {
+            inputs.clear();
+            throw failure.get();
+        }
+
+        Chunk<O> outputs = new Chunk<>();
+        int index = 0;
+        for (Chunk<I>.ChunkIterator iterator = inputs.iterator(); iterator.hasNext(); index++) {
+            iterator.next();
+            @SuppressWarnings("unchecked")
+            O output = (O) results[index];
+            if (output != null) {
+                outputs.add(output);
+            } else {
+                iterator.remove();
+            }
+        }
+        return outputs;
+    }
+
+    private Timer processTimer(StepExecution stepExecution, String status) {
+        return BatchMetrics.createTimer("item.process", "Item processing duration",
+                Tag.of("job.name", stepExecution.getJobExecution().getJobInstance().getJobName()),
+                Tag.of("step.name", stepExecution.getStepName()),
+                Tag.of("status", status));
+    }
+
+    private class ProcessAction extends RecursiveAction {
+        private final List<I> items;
+        private final Object[] results;
+        private final AtomicReference<Exception> failure;
+        private final Timer[] timers; //success, failure
+        private final int from;
+        private final int to;
+
+        private ProcessAction(List<I> items, Object[] results, AtomicReference<Exception> failure, Timer[] timers,
+                              int from, int to) {
+            this.items = items;
+            this.results = results;
+            this.failure = failure;
+            this.timers = timers;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > batchSize) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ProcessAction(items, results, failure, timers, from, middle),
+                        new ProcessAction(items, results, failure, timers, middle, to));
+                return;
+            }
+            for (int i = from; i < to && failure.get() == null; i++) {
+                long start = System.nanoTime();
+                try {
+                    results[i] = doProcess(items.get(i));
+                    timers[0].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                } catch (Exception e) {
+                    timers[1].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    //처음 발생한 예외만 던지고 나머지 sub-batch는 중단
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }
+    }
+}
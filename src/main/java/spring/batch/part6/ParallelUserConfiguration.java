@@ -34,6 +34,8 @@ import org.springframework.core.task.TaskExecutor;
 import spring.batch.part4.LevelUpJobExecutionListener;
 import spring.batch.part4.SaveUserTasklet;
 import spring.batch.part4.User;
+import spring.batch.part4.UserKeysetItemReader;
+import spring.batch.part4.UserLevelUpItemWriter;
 import spring.batch.part4.UserRepository;
 import spring.batch.part5.JobParameterDecider;
 import spring.batch.part5.OrderStatistics;
@@ -206,11 +208,7 @@ public class ParallelUserConfiguration {
     }
 
     private ItemWriter<? super User> itemWriter() {
-        return users -> { users.forEach(x-> {
-                x.levelUp();
-                userRepository.save(x);//update
-            });
-        };
+        return new UserLevelUpItemWriter<>(dataSource);
     }
 
     private ItemProcessor<? super User,? extends User> itemProcessor() {
@@ -237,7 +235,7 @@ public class ParallelUserConfiguration {
     @Bean(JOB_NAME + "_userLevelUpStep.manager")
     public Step userLevelUpManagerStep() throws Exception {
     return this.stepBuilderFactory.get(JOB_NAME + "_userLevelUpStep.manager")
-            .partitioner(JOB_NAME + "_userLevelUpStep", new UserLevelUpPartitioner(userRepository))
+            .partitioner(JOB_NAME + "_userLevelUpStep", new BalancedUserLevelUpPartitioner(dataSource))
             .step(userLevelUpStep())
             .partitionHandler(taskExecutorPartitionHandler())
             .build();
@@ -252,22 +250,14 @@ public class ParallelUserConfiguration {
 
         return handler;
     }
-    @Bean(JOB_NAME+ "_jpaPagingItemReader")
+    @Bean(JOB_NAME+ "_userKeysetItemReader")
     @StepScope
-    JpaPagingItemReader<? extends User> itemReader(@Value("#{stepExecutionContext[minId]}") Long minId
+    UserKeysetItemReader itemReader(@Value("#{stepExecutionContext[minId]}") Long minId
             , @Value("#{stepExecutionContext[maxId]}") Long maxId) throws Exception {
-        Map<String, Object> parameters = new HashMap<>();
-        parameters.put("minId", minId);
-        parameters.put("maxId", maxId);
-        //JpaPagingItemReader
-        JpaPagingItemReader itemReader = new JpaPagingItemReaderBuilder<User>()
-                .name(JOB_NAME+ "_jpaPagingItemReader")
-                .parameterValues(parameters)
-                .entityManagerFactory(entityManagerFactory)
-                .queryString("select u from User u where u.id between :minId and :maxId")
-                .pageSize(CHUNK) //보통 chunk size와 동일하게 설정함.
-                .build();
-        itemReader.afterPropertiesSet();
+        //between + offset paging 대신 minId ~ maxId 범위를 id 기준 keyset으로 조회
+        //재시작 시 partition step의 execution context에 저장된 lastId부터 이어서 읽음
+        UserKeysetItemReader itemReader = new UserKeysetItemReader(entityManagerFactory, CHUNK, minId, maxId);
+        itemReader.setName(JOB_NAME+ "_userKeysetItemReader");
         return itemReader;
     }
 
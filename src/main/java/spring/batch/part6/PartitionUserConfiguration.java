@@ -10,8 +10,8 @@ import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.partition.PartitionHandler;
 import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
-import org.springframework.batch.integration.async.AsyncItemProcessor;
-import org.springframework.batch.integration.async.AsyncItemWriter;
+import org.springframework.batch.core.step.item.ChunkOrientedTasklet;
+import org.springframework.batch.core.step.item.SimpleChunkProvider;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemWriter;
@@ -24,6 +24,8 @@ import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
 import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
 import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
+import org.springframework.batch.repeat.support.RepeatTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -32,6 +34,9 @@ import org.springframework.core.task.TaskExecutor;
 import spring.batch.part4.LevelUpJobExecutionListener;
 import spring.batch.part4.SaveUserTasklet;
 import spring.batch.part4.User;
+import spring.batch.part4.UserLevelUp;
+import spring.batch.part4.UserLevelUpItemWriter;
+import spring.batch.part4.UserOrderMergeItemReader;
 import spring.batch.part4.UserRepository;
 import spring.batch.part5.JobParameterDecider;
 import spring.batch.part5.OrderStatistics;
@@ -43,13 +48,15 @@ import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
 
 @Configuration
 @Slf4j
 public class PartitionUserConfiguration {
     private final String JOB_NAME = "partitionUserJob";
     private final int CHUNK = 1000;
+    //partition thread(8개)가 같이 쓰는 process 전용 pool 크기
+    private final int PROCESS_POOL_SIZE = 4;
     private final JobBuilderFactory jobBuilderFactory;
     private final StepBuilderFactory stepBuilderFactory;
     private final UserRepository userRepository;
@@ -160,19 +167,33 @@ public class PartitionUserConfiguration {
 
     @Bean(JOB_NAME+"_userLevelUpStep")
     public Step userLevelUpStep() throws Exception {
+        //AsyncItemProcessor(item마다 Future) 대신 chunk 단위로 fork/join 처리 (AsyncUserConfiguration이 비교 기준)
+        UserOrderMergeItemReader itemReader = itemReader(null, null); //minId, maxId
+        RepeatTemplate chunkOperations = new RepeatTemplate();
+        chunkOperations.setCompletionPolicy(new SimpleCompletionPolicy(CHUNK));
+
+        //commonPool은 UserLevelSnapshot 등 다른 fork/join 작업과 같이 쓰므로 전용 pool로 병렬 정도 제한
+        ParallelChunkProcessor<UserLevelUp, UserLevelUp> chunkProcessor = new ParallelChunkProcessor<>(itemProcessor(), itemWriter(), 100);
+        chunkProcessor.setPool(processPool());
+
         return stepBuilderFactory.get(JOB_NAME+"_userLevelUpStep")
-                .<User, Future<User>>chunk(CHUNK)
-                .reader(itemReader(null, null)) //minId, maxId
-                .processor(itemProcessor())
-                .writer(itemWriter())
+                .tasklet(new ChunkOrientedTasklet<>(
+                        new SimpleChunkProvider<>(itemReader, chunkOperations),
+                        chunkProcessor))
+                .stream(itemReader)
                 .build();
 
     }
+
+    @Bean(name = JOB_NAME+"_processPool", destroyMethod = "shutdown")
+    public ForkJoinPool processPool() {
+        return new ForkJoinPool(PROCESS_POOL_SIZE);
+    }
     //추가
     @Bean(JOB_NAME + "_userLevelUpStep.manager")
     public Step userLevelUpManagerStep() throws Exception {
         return this.stepBuilderFactory.get(JOB_NAME + "_userLevelUpStep.manager")
-                .partitioner(JOB_NAME + "_userLevelUpStep", new UserLevelUpPartitioner(userRepository))
+                .partitioner(JOB_NAME + "_userLevelUpStep", new BalancedUserLevelUpPartitioner(dataSource))
                 .step(userLevelUpStep())
                 .partitionHandler(taskExecutorPartitionHandler())
                 .build();
@@ -207,53 +228,31 @@ public class PartitionUserConfiguration {
     */
 
     //Paritioner에서 생성한 execution context를 사용하기 위하여 bean으로 설정 후 stepScope 달기.
-    //ItemReader가 아닌 JpaPagingItemReader로 정확히 명시해서 return 해야 함.
+    //ItemReader가 아닌 UserOrderMergeItemReader로 정확히 명시해서 return 해야 함. (ItemStream으로 등록되어야 lastId가 저장됨)
     //stepScope의 경우 proxy로 설정이 되기 때문에 명확히 명시.
     @Bean
     @StepScope
-    JpaPagingItemReader<? extends User> itemReader(@Value("#{stepExecutionContext[minId]}") Long minId
-                                        , @Value("#{stepExecutionContext[maxId]}") Long maxId) throws Exception {
-        Map<String, Object> parameters = new HashMap<>();
-        parameters.put("minId", minId);
-        parameters.put("maxId", maxId);
-        //JpaPagingItemReader
-        JpaPagingItemReader itemReader = new JpaPagingItemReaderBuilder<User>()
-                .name(JOB_NAME+ "_jpaPagingItemReader")
-                .parameterValues(parameters)
-                .entityManagerFactory(entityManagerFactory)
-                .queryString("select u from User u where u.id between :minId and :maxId")
-                .pageSize(CHUNK) //보통 chunk size와 동일하게 설정함.
-                .build();
-        itemReader.afterPropertiesSet();
+    UserOrderMergeItemReader itemReader(@Value("#{stepExecutionContext[minId]}") Long minId
+                                        , @Value("#{stepExecutionContext[maxId]}") Long maxId) {
+        //User entity(JPA) 대신 minId ~ maxId 범위의 user, orders 두 cursor를 merge join 해서 주문 합계를 계산
+        //재시작 시 partition step의 execution context에 저장된 lastId부터 이어서 읽음
+        UserOrderMergeItemReader itemReader = new UserOrderMergeItemReader(dataSource, minId, maxId);
+        itemReader.setName(JOB_NAME+ "_userOrderMergeItemReader");
+        itemReader.setFetchSize(CHUNK);
         return itemReader;
     }
 
-    private AsyncItemWriter<User> itemWriter() {
-        ItemWriter<User> itemWriter =  users -> { users.forEach(x-> {
-            x.levelUp();
-            userRepository.save(x);//update
-        });
-        };
-        AsyncItemWriter<User> asyncItemWriter = new AsyncItemWriter<>();
-        asyncItemWriter.setDelegate(itemWriter);
-        return asyncItemWriter;
+    private ItemWriter<UserLevelUp> itemWriter() {
+        return new UserLevelUpItemWriter<>(dataSource);
     }
 
-    //async로 변경
-    private AsyncItemProcessor<User,User> itemProcessor() {
-        //AS-WAS
-        ItemProcessor<User, User> itemProcessor =  user -> {
+    //ParallelChunkProcessor의 pool thread에서 호출됨 (주문 합계는 reader가 계산해 둠)
+    private ItemProcessor<UserLevelUp, UserLevelUp> itemProcessor() {
+        return user -> {
             if(user.availableLevelUp()){
                 return user;
             }
             return null;
         };
-        //TO-BE
-        //delegate 메소드로 기존 itemProcessor 감싸고, taskExecutor 주입 받음
-        AsyncItemProcessor<User, User> asyncItemProcessor = new AsyncItemProcessor<>();
-        asyncItemProcessor.setDelegate(itemProcessor);
-        asyncItemProcessor.setTaskExecutor(this.taskExecutor);
-
-        return asyncItemProcessor;
     }
 }
@@ -0,0 +1,143 @@
+package spring.batch.part6;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+//delegate reader를 별도 thread에서 pageSize개씩 미리 읽어두는 reader
+//chunk를 process, write(commit) 하는 동안 다음 page를 읽으므로 DB 읽기와 쓰기 시간이 겹침
+// - 읽어둔 page는 capacity개까지만 queue에 쌓음 (writer가 느리면 읽기 thread가 대기)
+// - delegate의 상태는 읽기 thread가 item마다 저장해두고, update()에서는 step이 실제로 넘겨받은 마지막 item 직후의 상태를 저장
+//   재시작 시 그 상태로 delegate를 열기만 함 (item 수만큼 건너뛰지 않으므로 lastId로 재시작하는 delegate도 그대로 동작)
+// - transaction은 그대로 chunk 단위 (읽기 thread는 chunk transaction에 참여하지 않으므로 delegate는 자체 connection 사용)
+//delegate는 읽기 thread에서만 사용, 이 reader는 thread-safe 하지 않음
+@Slf4j
+public class PrefetchingItemReader<T> extends ItemStreamSupport implements ItemStreamReader<T> {
+    private final ItemStreamReader<? extends T> delegate;
+    private final int pageSize;
+    private final int capacity;
+
+    private BlockingQueue<Page<T>> queue;
+    private Thread prefetcher;
+    private volatile boolean running;
+
+    private Page<T> page;
+    private int position;
+    //step에 마지막으로 넘겨준 item을 읽은 직후의 delegate 상태
+    private ExecutionContext current;
+
+    public PrefetchingItemReader(ItemStreamReader<? extends T> delegate, int pageSize, int capacity) {
+        setName(ClassUtils.getShortName(PrefetchingItemReader.class));
+        this.delegate = delegate;
+        this.pageSize = pageSize;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        delegate.open(executionContext);
+
+        this.current = new ExecutionContext();
+        delegate.update(current);
+        this.page = null;
+        this.position = 0;
+
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.running = true;
+        this.prefetcher = new Thread(this::prefetch, getExecutionContextKey("prefetcher"));
+        this.prefetcher.setDaemon(true);
+        this.prefetcher.start();
+    }
+
+    @Override
+    public T read() throws Exception {
+        while (page == null || position == page.items.size()) {
+            if (page != null && page.last) {
+                return null;
+            }
+            this.page = queue.take();
+            this.position = 0;
+            if (page.error != null) {
+                throw page.error;
+            }
+        }
+        this.current = page.states.get(position);
+        return page.items.get(position++);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            executionContext.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (prefetcher != null) {
+            prefetcher.interrupt();
+            try {
+                prefetcher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            prefetcher = null;
+        }
+        delegate.close();
+    }
+
+    private void prefetch() {
+        try {
+            while (running) {
+                List<T> items = new ArrayList<>(pageSize);
+                List<ExecutionContext> states = new ArrayList<>(pageSize);
+                T item = null;
+                while (items.size() < pageSize && (item = delegate.read()) != null) {
+                    items.add(item);
+                    ExecutionContext state = new ExecutionContext();
+                    delegate.update(state);
+                    states.add(state);
+                }
+                boolean last = item == null;
+                queue.put(new Page<>(items, states, null, last));
+                if (last) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            //close()에서 중단
+        } catch (Exception e) {
+            log.error("prefetch 실패", e);
+            try {
+                queue.put(new Page<>(Collections.emptyList(), Collections.emptyList(), e, true));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class Page<T> {
+        private final List<T> items;
+        //item을 하나씩 읽은 직후의 delegate 상태
+        private final List<ExecutionContext> states;
+        private final Exception error;
+        private final boolean last;
+
+        private Page(List<T> items, List<ExecutionContext> states, Exception error, boolean last) {
+            this.items = items;
+            this.states = states;
+            this.error = error;
+            this.last = last;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package spring.batch.part6;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import java.util.HashMap;
+import java.util.Map;
+
+//생성할 user 0 ~ count-1 번째를 gridSize 개 범위로 나눔 (id는 writer가 IdRangeAllocator로 예약)
+public class SyntheticUserPartitioner implements Partitioner {
+    private final long count;
+
+    public SyntheticUserPartitioner(long count) {
+        this.count = count;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Map<String, ExecutionContext> result = new HashMap<>();
+        long targetSize = count / gridSize + 1;
+        long stepNumber = 0;
+        for (long start = 0; start < count; start += targetSize) {
+            ExecutionContext value = new ExecutionContext();
+            value.putLong("fromIndex", start);
+            value.putLong("toIndex", Math.min(count, start + targetSize) - 1);
+            result.put("partition" + stepNumber, value);
+            stepNumber++;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,152 @@
+package spring.batch.part6;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.policy.CompletionPolicySupport;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+import spring.batch.part4.UserLevelUp;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//multi-thread step 용 thread-safe reader (lock 없음)
+// - [minId, maxId]를 blockSize 크기의 id block으로 나누고, thread마다 AtomicLong cursor로 다음 block을 가져감
+// - block 하나 = chunk 하나 (completionPolicy()를 step의 chunk policy로 사용해야 함)
+//   chunk가 block 경계에서 끝나므로 다른 thread의 chunk에 읽다 남은 item이 생기지 않음
+// - chunk commit 때 update()에서 끝난 block을 기록 (연속으로 끝난 block은 lowBlock 하나로 압축)
+//   재시작 시 commit 된 block은 건너뛰고, 읽었지만 commit 되지 않은 block은 다시 읽음
+public class UserIdBlockItemReader extends ItemStreamSupport implements ItemStreamReader<UserLevelUp> {
+    private static final String MIN_ID = "minId";
+    private static final String MAX_ID = "maxId";
+    private static final String LOW_BLOCK = "lowBlock";
+    private static final String DONE_BLOCKS = "doneBlocks";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int blockSize;
+
+    private final AtomicLong nextBlock = new AtomicLong();
+    private final Set<Long> doneBlocks = ConcurrentHashMap.newKeySet();
+    //실패한 실행의 pool thread에 남은 값을 쓰지 않도록 open 때마다 새로 만듦
+    private ThreadLocal<Block> current = new ThreadLocal<>();
+    private ThreadLocal<Long> finished = new ThreadLocal<>();
+    private long minId;
+    private long blockCount;
+    private long lowBlock;
+
+    public UserIdBlockItemReader(DataSource dataSource, int blockSize) {
+        setName(ClassUtils.getShortName(UserIdBlockItemReader.class));
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.blockSize = blockSize;
+    }
+
+    //읽고 있는 block을 다 읽으면 chunk 종료
+    public CompletionPolicySupport completionPolicy() {
+        return new CompletionPolicySupport() {
+            @Override
+            public boolean isComplete(RepeatContext context) {
+                return current.get() == null;
+            }
+        };
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        this.current = new ThreadLocal<>();
+        this.finished = new ThreadLocal<>();
+        this.doneBlocks.clear();
+        long maxId;
+        //처음 실행한 범위를 그대로 사용해야 block 번호가 바뀌지 않음
+        if (executionContext.containsKey(getExecutionContextKey(MIN_ID))) {
+            this.minId = executionContext.getLong(getExecutionContextKey(MIN_ID));
+            maxId = executionContext.getLong(getExecutionContextKey(MAX_ID));
+            this.lowBlock = executionContext.getLong(getExecutionContextKey(LOW_BLOCK));
+            for (String block : StringUtils.commaDelimitedListToSet(executionContext.getString(getExecutionContextKey(DONE_BLOCKS), ""))) {
+                doneBlocks.add(Long.valueOf(block));
+            }
+        } else {
+            this.minId = jdbcTemplate.queryForObject("select coalesce(min(id), 1) from user", Long.class);
+            maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from user", Long.class);
+            this.lowBlock = 0;
+        }
+        this.blockCount = maxId < minId ? 0 : (maxId - minId) / blockSize + 1;
+        this.nextBlock.set(lowBlock);
+        executionContext.putLong(getExecutionContextKey(MIN_ID), minId);
+        executionContext.putLong(getExecutionContextKey(MAX_ID), maxId);
+    }
+
+    @Override
+    public UserLevelUp read() {
+        Block block = current.get();
+        while (block == null) {
+            long index = claim();
+            if (index < 0) {
+                return null;
+            }
+            long from = minId + index * blockSize;
+            List<UserLevelUp> items = jdbcTemplate.query(
+                    "select id, level, total_amount from user where id between ? and ? order by id",
+                    UserLevelUp.ROW_MAPPER, from, from + blockSize - 1);
+            if (items.isEmpty()) {
+                //빈 block은 commit과 관계없이 끝난 것으로 처리
+                doneBlocks.add(index);
+                continue;
+            }
+            block = new Block(index, items);
+            current.set(block);
+        }
+
+        UserLevelUp item = block.items.get(block.position++);
+        if (block.position == block.items.size()) {
+            current.remove();
+            finished.set(block.index);
+        }
+        return item;
+    }
+
+    //chunk transaction 안에서 commit 하는 thread가 호출 (TaskletStep이 순서대로 호출)
+    @Override
+    public synchronized void update(ExecutionContext executionContext) {
+        Long block = finished.get();
+        if (block != null) {
+            doneBlocks.add(block);
+            finished.remove();
+        }
+        while (doneBlocks.remove(lowBlock)) {
+            lowBlock++;
+        }
+        executionContext.putLong(getExecutionContextKey(LOW_BLOCK), lowBlock);
+        executionContext.putString(getExecutionContextKey(DONE_BLOCKS),
+                StringUtils.collectionToCommaDelimitedString(new TreeSet<>(doneBlocks)));
+    }
+
+    private long claim() {
+        while (true) {
+            long index = nextBlock.getAndIncrement();
+            if (index >= blockCount) {
+                return -1;
+            }
+            if (!doneBlocks.contains(index)) {
+                return index;
+            }
+        }
+    }
+
+    private static class Block {
+        private final long index;
+        private final List<UserLevelUp> items;
+        private int position = 0;
+
+        private Block(long index, List<UserLevelUp> items) {
+            this.index = index;
+            this.items = items;
+        }
+    }
+}
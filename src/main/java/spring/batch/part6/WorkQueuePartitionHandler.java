@@ -0,0 +1,98 @@
+package spring.batch.part6;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.partition.support.AbstractPartitionHandler;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.FutureTask;
+
+//TaskExecutorPartitionHandler는 partition 하나당 thread 하나를 고정으로 배정하기 때문에
+//느린 partition이 있으면 나머지 thread는 끝나고 놀게 됨.
+//partition을 공유 queue에 (오래 걸릴 것부터) 넣어두고, workers 개의 thread가 끝나는 대로 다음 partition을 가져가서 실행.
+//partition 별 StepExecution은 그대로 저장되기 때문에 재시작 시 완료되지 않은 partition만 다시 실행됨.
+public class WorkQueuePartitionHandler extends AbstractPartitionHandler implements InitializingBean {
+    private Step step;
+    private TaskExecutor taskExecutor = new SyncTaskExecutor();
+    private int workers = 1;
+
+    public void setStep(Step step) {
+        this.step = step;
+    }
+
+    public void setTaskExecutor(TaskExecutor taskExecutor) {
+        this.taskExecutor = taskExecutor;
+    }
+
+    //동시에 실행할 worker thread 수 (partition 수와 무관)
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Assert.notNull(step, "A Step must be provided.");
+        Assert.isTrue(workers > 0, "workers must be greater than zero.");
+    }
+
+    @Override
+    protected Set<StepExecution> doHandle(StepExecution managerStepExecution,
+                                          Set<StepExecution> partitionStepExecutions) throws Exception {
+        List<StepExecution> ordered = new ArrayList<>(partitionStepExecutions);
+        ordered.sort(Comparator.comparingLong(WorkQueuePartitionHandler::cost).reversed());
+        Queue<StepExecution> queue = new ConcurrentLinkedQueue<>(ordered);
+
+        List<FutureTask<Void>> tasks = new ArrayList<>();
+        int workerCount = Math.min(workers, ordered.size());
+        for (int i = 0; i < workerCount; i++) {
+            FutureTask<Void> task = new FutureTask<>(() -> {
+                drain(queue);
+                return null;
+            });
+            tasks.add(task);
+            taskExecutor.execute(task);
+        }
+
+        for (FutureTask<Void> task : tasks) {
+            task.get();
+        }
+        return new HashSet<>(partitionStepExecutions);
+    }
+
+    private void drain(Queue<StepExecution> queue) {
+        StepExecution stepExecution;
+        while ((stepExecution = queue.poll()) != null) {
+            try {
+                step.execute(stepExecution);
+            } catch (Throwable e) {
+                //TaskExecutorPartitionHandler와 동일하게 실패한 partition만 FAILED로 기록하고 다음 partition 진행
+                stepExecution.setStatus(BatchStatus.FAILED);
+                stepExecution.addFailureException(e);
+            }
+        }
+    }
+
+    //처리량 추정치: 이력 기반 예상 처리 시간이 있으면 사용하고, 없으면 partition의 id 범위 크기
+    static long cost(StepExecution stepExecution) {
+        ExecutionContext context = stepExecution.getExecutionContext();
+        if (context.containsKey(HistoryAwareUserLevelUpPartitioner.ESTIMATED_MILLIS)) {
+            return context.getLong(HistoryAwareUserLevelUpPartitioner.ESTIMATED_MILLIS);
+        }
+        if (!context.containsKey("minId") || !context.containsKey("maxId")) {
+            return 0;
+        }
+        return context.getLong("maxId") - context.getLong("minId") + 1;
+    }
+}
@@ -0,0 +1,49 @@
+package spring.batch;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobRepository;
+
+import java.util.Date;
+
+class CoalescingJobRepositoryTest {
+    private final JobRepository delegate = Mockito.mock(JobRepository.class);
+    private final CoalescingJobRepository jobRepository = new CoalescingJobRepository(delegate, 3, 0);
+
+    @Test
+    public void coalesceChunkUpdates() {
+        StepExecution stepExecution = new StepExecution("step", new JobExecution(1L), 1L);
+        stepExecution.setStatus(BatchStatus.STARTED);
+
+        //step 시작은 바로 저장
+        jobRepository.update(stepExecution);
+        Mockito.verify(delegate, Mockito.times(1)).update(stepExecution);
+
+        //context(restart 지점)는 chunk 마다 저장, step execution은 3번째 chunk에서 저장
+        for (int chunk = 0; chunk < 3; chunk++) {
+            jobRepository.updateExecutionContext(stepExecution);
+            jobRepository.update(stepExecution);
+            Mockito.verify(delegate, Mockito.times(chunk + 1)).updateExecutionContext(stepExecution);
+            Mockito.verify(delegate, Mockito.times(chunk < 2 ? 1 : 2)).update(stepExecution);
+        }
+    }
+
+    @Test
+    public void flushOnStepEnd() {
+        StepExecution stepExecution = new StepExecution("step", new JobExecution(1L), 1L);
+        stepExecution.setStatus(BatchStatus.STARTED);
+        jobRepository.update(stepExecution);
+        jobRepository.update(stepExecution);
+        Mockito.verify(delegate, Mockito.times(1)).update(stepExecution);
+
+        //step 종료(status 변경, endTime)는 남은 chunk 수와 상관없이 바로 저장
+        stepExecution.upgradeStatus(BatchStatus.COMPLETED);
+        stepExecution.setEndTime(new Date());
+        jobRepository.update(stepExecution);
+
+        Mockito.verify(delegate, Mockito.times(2)).update(stepExecution);
+    }
+}
@@ -0,0 +1,75 @@
+package spring.batch;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.repository.dao.Jackson2ExecutionContextStringSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+class CompactExecutionContextSerializerTest {
+    private final CompactExecutionContextSerializer serializer = new CompactExecutionContextSerializer();
+    //Jackson은 작은 Long 값을 Integer로 읽을 수 있으므로 Jackson 결과와 비교
+    private final Jackson2ExecutionContextStringSerializer jackson = new Jackson2ExecutionContextStringSerializer();
+
+    @Test
+    public void primitiveContext() throws Exception {
+        Map<String, Object> context = new HashMap<>();
+        context.put("minId", 1L);
+        context.put("maxId", Long.MAX_VALUE);
+        context.put("read.count", -3);
+        context.put("rate", 0.5);
+        context.put("done", true);
+        context.put("name", "등급 상향");
+
+        String serialized = serialize(context);
+
+        Assertions.assertThat(serialized).startsWith("CX1:");
+        Assertions.assertThat(deserialize(serialized)).isEqualTo(context);
+    }
+
+    @Test
+    public void fallbackToJackson() throws Exception {
+        //지원하지 않는 type이 있으면 context 전체를 Jackson으로 저장
+        Map<String, Object> context = new HashMap<>();
+        context.put("minId", 1L);
+        context.put("date", new Date(0));
+
+        String serialized = serialize(context);
+
+        Assertions.assertThat(serialized).doesNotStartWith("CX1:");
+        Assertions.assertThat(deserialize(serialized)).isEqualTo(jackson.deserialize(bytes(serialized)));
+    }
+
+    @Test
+    public void readJacksonContext() throws Exception {
+        //기존 meta 데이터(JSON)도 읽을 수 있어야 함
+        Map<String, Object> context = new HashMap<>();
+        context.put("minId", 1L);
+        context.put("batch.stepType", "org.springframework.batch.core.step.tasklet.TaskletStep");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        jackson.serialize(context, out);
+
+        Assertions.assertThat(serializer.deserialize(new ByteArrayInputStream(out.toByteArray())))
+                .isEqualTo(jackson.deserialize(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    private String serialize(Map<String, Object> context) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(context, out);
+        return new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    private Map<String, Object> deserialize(String serialized) throws Exception {
+        return serializer.deserialize(bytes(serialized));
+    }
+
+    private ByteArrayInputStream bytes(String serialized) {
+        return new ByteArrayInputStream(serialized.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
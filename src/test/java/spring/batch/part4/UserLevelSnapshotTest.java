@@ -0,0 +1,77 @@
+package spring.batch.part4;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+class UserLevelSnapshotTest {
+
+    @ParameterizedTest
+    @EnumSource(UserLevelSnapshot.Backing.class)
+    public void changedPositions(UserLevelSnapshot.Backing backing) throws Exception {
+        //fork/join leaf(65536)보다 많이 넣어서 나누어진 결과가 id 순서로 합쳐지는지 확인
+        int size = 200_000;
+        try (UserLevelSnapshot snapshot = UserLevelSnapshot.allocate(size, backing)) {
+            for (int i = 0; i < size; i++) {
+                //3명 중 1명만 NORMAL -> SILVER 대상
+                snapshot.add(i + 1, User.Level.NORMAL, i % 3 == 0 ? 200_000 : 199_999);
+            }
+
+            int[] changed = snapshot.changedPositions(new ForkJoinPool(4));
+
+            Assertions.assertThat(changed).hasSize((size + 2) / 3);
+            Assertions.assertThat(changed).isSorted();
+            Assertions.assertThat(Arrays.stream(changed).allMatch(position -> position % 3 == 0)).isTrue();
+            Assertions.assertThat(snapshot.id(changed[1])).isEqualTo(4);
+            Assertions.assertThat(snapshot.nextLevel(changed[1])).isEqualTo(User.Level.SILVER);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(UserLevelSnapshot.Backing.class)
+    public void levels(UserLevelSnapshot.Backing backing) throws Exception {
+        try (UserLevelSnapshot snapshot = UserLevelSnapshot.allocate(4, backing)) {
+            snapshot.add(1, User.Level.VIP, 1_000_000);
+            snapshot.add(2, User.Level.GOLD, 500_000);
+            snapshot.add(3, null, 500_000);
+            snapshot.add(4, User.Level.SILVER, 299_999);
+
+            Assertions.assertThat(snapshot.changedPositions(ForkJoinPool.commonPool())).containsExactly(1);
+            Assertions.assertThat(snapshot.level(2)).isNull();
+            Assertions.assertThatThrownBy(() -> snapshot.add(5, User.Level.NORMAL, 0))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(UserLevelSnapshot.Backing.class)
+    public void transitions(UserLevelSnapshot.Backing backing) throws Exception {
+        try (UserLevelSnapshot snapshot = UserLevelSnapshot.allocate(100_000, backing)) {
+            for (int i = 0; i < 100_000; i++) {
+                snapshot.add(i + 1, User.Level.values()[i % 4], i * 10L);
+            }
+            List<LevelThresholds> scenarios = LevelThresholds.of("strict:300000/500000/900000");
+
+            long[][][] transitions = snapshot.transitions(scenarios, new ForkJoinPool(4));
+
+            //current 기준 이동 수는 changedPositions와 같아야 함
+            long moved = 0;
+            for (int level = 0; level < 4; level++) {
+                for (int next = 0; next < 4; next++) {
+                    moved += level == next ? 0 : transitions[0][level][next];
+                }
+            }
+            Assertions.assertThat(scenarios.get(0).getName()).isEqualTo("current");
+            Assertions.assertThat(moved).isEqualTo(snapshot.changedPositions(ForkJoinPool.commonPool()).length);
+            //NORMAL(i % 4 == 3) 중 900000 이상은 strict에서도 VIP까지 상향
+            Assertions.assertThat(transitions[1][User.Level.NORMAL.ordinal()][User.Level.VIP.ordinal()])
+                    .isEqualTo(IntStream.range(0, 100_000).filter(i -> i % 4 == 3 && i * 10L >= 900_000).count());
+            Assertions.assertThat(Arrays.stream(transitions[1]).flatMapToLong(Arrays::stream).sum()).isEqualTo(100_000);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package spring.batch.part4;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import spring.batch.TestConfiguration;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+//등급 상향 대상만 조회하는 reader를 중간에 멈추고 재시작해도 남은 대상 user를 건너뛰지 않는지 확인
+@SpringJUnitConfig(TestConfiguration.class)
+public class UserLevelUpCursorItemReaderTest {
+    private static final String SQL = "select id, level, total_amount from user " +
+            "where level in (" + UserLevelUpSql.upgradableLevels() + ") " +
+            "and total_amount >= " + UserLevelUpSql.nextAmountCase("level") + " " +
+            "and id > ? " +
+            "order by id";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.update("delete from user");
+    }
+
+    @Test
+    public void restart_from_last_committed_id() throws Exception {
+        //id 1~20 중 짝수 id만 NORMAL -> SILVER 대상 (10명)
+        for (long id = 1; id <= 20; id++) {
+            jdbcTemplate.update("insert into user (id, username, level, total_amount) values (?, ?, ?, ?)",
+                    id, "user" + id, User.Level.NORMAL.name(), id % 2 == 0 ? 200_000 : 100_000);
+        }
+        UserLevelUpItemWriter<UserLevelUp> itemWriter = new UserLevelUpItemWriter<>(dataSource);
+
+        //첫 실행: 4명 처리(commit) 후 실패
+        ExecutionContext executionContext = new ExecutionContext();
+        UserLevelUpCursorItemReader itemReader = new UserLevelUpCursorItemReader(dataSource, SQL);
+        itemReader.open(executionContext);
+        List<UserLevelUp> chunk = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            chunk.add(itemReader.read());
+        }
+        itemWriter.write(chunk);
+        itemReader.update(executionContext);
+        itemReader.close();
+
+        //재시작: 처리한 4명은 조회 조건에서 빠지지만 나머지 6명은 모두 읽어야 함
+        UserLevelUpCursorItemReader restarted = new UserLevelUpCursorItemReader(dataSource, SQL);
+        restarted.open(executionContext);
+        List<Long> ids = new ArrayList<>();
+        UserLevelUp item;
+        while ((item = restarted.read()) != null) {
+            ids.add(item.getId());
+        }
+        restarted.close();
+
+        Assertions.assertThat(ids).containsExactly(10L, 12L, 14L, 16L, 18L, 20L);
+    }
+}
@@ -0,0 +1,88 @@
+package spring.batch.part4;
+
+import org.assertj.core.api.Assertions;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import spring.batch.TestConfiguration;
+import spring.batch.part5.Orders;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+//user 저장 시 실행되는 SQL 수 확인
+//단방향 @OneToMany + @JoinColumn 일 때는 orders insert(user_id null) 후 update orders set user_id 가 건마다 추가로 실행됨
+@SpringJUnitConfig(TestConfiguration.class)
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=spring.batch.part4.UserOrdersWriteTest$StatementCounter",
+        //batch insert는 statement 하나로 묶여서 세어지므로 건별로 실행
+        "spring.jpa.properties.hibernate.jdbc.batch_size=0"})
+public class UserOrdersWriteTest {
+    private static final int USERS = 10;
+    private static final int ORDERS_PER_USER = 3;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.update("delete from orders");
+        jdbcTemplate.update("delete from user");
+        StatementCounter.STATEMENTS.clear();
+    }
+
+    @Test
+    public void orders_are_inserted_with_user_id() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            Orders[] orders = new Orders[ORDERS_PER_USER];
+            for (int j = 0; j < ORDERS_PER_USER; j++) {
+                orders[j] = Orders.builder()
+                        .amount(1_000)
+                        .createdDate(LocalDate.of(2020, 11, 1))
+                        .itemName("item" + j)
+                        .build();
+            }
+            users.add(User.builder()
+                    .username("testUser" + i)
+                    .orders(Arrays.asList(orders))
+                    .build());
+        }
+        StatementCounter.STATEMENTS.clear();
+
+        userRepository.saveAll(users);
+
+        //user, orders insert만 실행되고 orders update는 없음 (statement 수 = 단방향 매핑의 절반 수준)
+        Assertions.assertThat(StatementCounter.count("insert into user ")).isEqualTo(USERS);
+        Assertions.assertThat(StatementCounter.count("insert into orders ")).isEqualTo(USERS * ORDERS_PER_USER);
+        Assertions.assertThat(StatementCounter.count("update orders ")).isZero();
+        Assertions.assertThat(jdbcTemplate.queryForObject("select count(*) from orders where user_id is null", Long.class))
+                .isZero();
+    }
+
+    public static class StatementCounter implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+
+        static long count(String prefix) {
+            return STATEMENTS.stream()
+                    .filter(sql -> sql.toLowerCase().startsWith(prefix))
+                    .count();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package spring.batch.part6;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//미리 읽어둔 page 중간에서 멈추고 재시작하면 step이 넘겨받은 다음 item부터 읽는지,
+//읽기 thread에서 난 delegate 예외가 read()에서 그대로 던져지는지 확인
+public class PrefetchingItemReaderTest {
+
+    @Test
+    public void restart_after_last_item_handed_to_step() throws Exception {
+        //pageSize 4: 첫 page(1~4) 중 3개만 읽은 상태에서 commit, 그 사이 읽기 thread는 다음 page까지 미리 읽음
+        ExecutionContext executionContext = new ExecutionContext();
+        PrefetchingItemReader<Integer> itemReader = new PrefetchingItemReader<>(new NumberItemReader(10, 0), 4, 2);
+        itemReader.open(executionContext);
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            items.add(itemReader.read());
+        }
+        itemReader.update(executionContext);
+        itemReader.close();
+        Assertions.assertThat(items).containsExactly(1, 2, 3);
+
+        //재시작: 미리 읽었지만 넘겨주지 않은 4부터
+        PrefetchingItemReader<Integer> restarted = new PrefetchingItemReader<>(new NumberItemReader(10, 0), 4, 2);
+        restarted.open(executionContext);
+        List<Integer> remaining = new ArrayList<>();
+        Integer item;
+        while ((item = restarted.read()) != null) {
+            remaining.add(item);
+        }
+        restarted.close();
+
+        Assertions.assertThat(remaining).containsExactly(4, 5, 6, 7, 8, 9, 10);
+    }
+
+    @Test
+    public void rethrow_delegate_exception() throws Exception {
+        //5번째 item을 읽을 때 실패: 첫 page(1~4)는 그대로 넘겨주고 그 다음 read에서 예외
+        PrefetchingItemReader<Integer> itemReader = new PrefetchingItemReader<>(new NumberItemReader(10, 5), 4, 2);
+        itemReader.open(new ExecutionContext());
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            items.add(itemReader.read());
+        }
+
+        Assertions.assertThat(items).containsExactly(1, 2, 3, 4);
+        Assertions.assertThatThrownBy(itemReader::read)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("read 실패: 5");
+        itemReader.close();
+    }
+
+    //1 ~ count를 읽는 delegate, 재시작 시 read.count 만큼 건너뜀 (failAt 번째 item에서 예외, 0이면 실패 없음)
+    private static class NumberItemReader extends AbstractItemCountingItemStreamItemReader<Integer> {
+        private final int count;
+        private final int failAt;
+        private int next;
+
+        private NumberItemReader(int count, int failAt) {
+            setName("numberItemReader");
+            this.count = count;
+            this.failAt = failAt;
+        }
+
+        @Override
+        protected void doOpen() {
+            next = 1;
+        }
+
+        @Override
+        protected Integer doRead() {
+            if (next > count) {
+                return null;
+            }
+            if (next == failAt) {
+                throw new IllegalStateException("read 실패: " + next);
+            }
+            return next++;
+        }
+
+        @Override
+        protected void doClose() {
+        }
+    }
+}
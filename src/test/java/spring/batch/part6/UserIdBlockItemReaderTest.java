@@ -0,0 +1,101 @@
+package spring.batch.part6;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import spring.batch.TestConfiguration;
+import spring.batch.part4.User;
+import spring.batch.part4.UserLevelUp;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//여러 thread가 block을 나누어 읽다가 실패한 뒤 재시작하면 commit 되지 않은 block만 다시 읽는지 확인
+@SpringJUnitConfig(TestConfiguration.class)
+public class UserIdBlockItemReaderTest {
+    private static final int BLOCK_SIZE = 10;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.update("delete from user");
+    }
+
+    @Test
+    public void restart_rereads_only_uncommitted_blocks() throws Exception {
+        //id 1~40 = block 0~3
+        for (long id = 1; id <= 40; id++) {
+            jdbcTemplate.update("insert into user (id, username, level, total_amount) values (?, ?, ?, ?)",
+                    id, "user" + id, User.Level.NORMAL.name(), 100_000);
+        }
+
+        ExecutionContext executionContext = new ExecutionContext();
+        UserIdBlockItemReader itemReader = new UserIdBlockItemReader(dataSource, BLOCK_SIZE);
+        itemReader.open(executionContext);
+
+        //block이 ThreadLocal에 묶이므로 thread 마다 단일 thread executor로 순서를 정해서 실행
+        ExecutorService first = Executors.newSingleThreadExecutor();
+        ExecutorService second = Executors.newSingleThreadExecutor();
+        try {
+            //first: block 0 commit
+            Assertions.assertThat(first.submit(() -> readBlock(itemReader, executionContext, true)).get())
+                    .containsExactlyElementsOf(ids(1, 10));
+            //second: block 1을 읽었지만 commit 전에 실패
+            Assertions.assertThat(second.submit(() -> readBlock(itemReader, executionContext, false)).get())
+                    .containsExactlyElementsOf(ids(11, 20));
+            //first: block 2 commit (block 1이 끝나지 않았으므로 lowBlock은 1에 머묾)
+            Assertions.assertThat(first.submit(() -> readBlock(itemReader, executionContext, true)).get())
+                    .containsExactlyElementsOf(ids(21, 30));
+        } finally {
+            first.shutdown();
+            second.shutdown();
+        }
+        itemReader.close();
+
+        //재시작: commit 된 block 0, 2는 건너뛰고 block 1, 3만 읽어야 함
+        UserIdBlockItemReader restarted = new UserIdBlockItemReader(dataSource, BLOCK_SIZE);
+        restarted.open(executionContext);
+        List<Long> ids = new ArrayList<>();
+        UserLevelUp item;
+        while ((item = restarted.read()) != null) {
+            ids.add(item.getId());
+        }
+        restarted.close();
+
+        List<Long> expected = new ArrayList<>(ids(11, 20));
+        expected.addAll(ids(31, 40));
+        Assertions.assertThat(ids).containsExactlyElementsOf(expected);
+    }
+
+    //block 하나(= chunk 하나)를 읽고 commit 하면 update 호출
+    private List<Long> readBlock(UserIdBlockItemReader itemReader, ExecutionContext executionContext, boolean commit) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            ids.add(itemReader.read().getId());
+        }
+        if (commit) {
+            itemReader.update(executionContext);
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(long from, long to) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+}